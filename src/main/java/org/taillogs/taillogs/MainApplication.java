@@ -62,6 +62,14 @@ public class MainApplication extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        // Also reached when the window is closed, which does not go through onExit
+        if (appController != null) {
+            appController.stopTailing();
+        }
+    }
+
     private void initializeHomeScene() throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("home-view.fxml"));
         homeScene = new Scene(fxmlLoader.load());
@@ -170,6 +178,26 @@ public class MainApplication extends Application {
                 appController.togglePause();
             }
 
+            @Override
+            public void onGoToLine() {
+                appController.showGoToLineDialog();
+            }
+
+            @Override
+            public void onGoToTime() {
+                appController.showGoToTimeDialog();
+            }
+
+            @Override
+            public boolean onFollowFolder(boolean enable) {
+                return appController.setFolderFollow(enable);
+            }
+
+            @Override
+            public void onMergeTimeline() {
+                appController.openMergedTimeline();
+            }
+
             @Override
             public void onAbout() {
                 showAboutDialog();
@@ -221,7 +249,8 @@ public class MainApplication extends Application {
             "Ctrl/Cmd+F - Open folder\n" +
             "Ctrl/Cmd+Q - Quit application\n" +
             "Ctrl/Cmd+L - Clear display\n" +
-            "Ctrl/Cmd+R - Refresh file\n\n" +
+            "Ctrl/Cmd+R - Refresh file\n" +
+            "Ctrl/Cmd+G - Go to line\n\n" +
             "Note: These shortcuts can be customized in Settings."
         );
         alert.showAndWait();
@@ -243,7 +272,7 @@ public class MainApplication extends Application {
 
             Stage settingsStage = new Stage();
             settingsStage.setTitle("Settings");
-            settingsStage.setScene(new Scene(root, 500, 300));
+            settingsStage.setScene(new Scene(root, 520, 700));
             settingsStage.initModality(Modality.APPLICATION_MODAL);
             settingsStage.initOwner(primaryStage);
 
@@ -1,9 +1,24 @@
 package org.taillogs.taillogs.config;
 
 public class AppearanceSettings {
+    public static final int DEFAULT_SCROLLBACK_LINES = 500_000;
+    public static final int DEFAULT_SCROLLBACK_MEGABYTES = 64;
+    public static final int DEFAULT_OPEN_LINES = 5_000;
+    public static final int DEFAULT_OPEN_MEGABYTES = 2;
+    public static final BackpressurePolicy DEFAULT_BACKPRESSURE = BackpressurePolicy.COALESCE;
+    public static final String DEFAULT_FOLDER_FILE_PATTERNS = "*.log, *.txt";
+    public static final String DEFAULT_FOLLOW_GLOB = "*.log";
+
     private int fontSize = 13;
     private String fontWeight = "Regular";
     private String codeAreaBackgroundColor = "#ffffff";
+    private int scrollbackLines = DEFAULT_SCROLLBACK_LINES;
+    private int scrollbackMegabytes = DEFAULT_SCROLLBACK_MEGABYTES;
+    private int openLines = DEFAULT_OPEN_LINES;
+    private int openMegabytes = DEFAULT_OPEN_MEGABYTES;
+    private BackpressurePolicy backpressure = DEFAULT_BACKPRESSURE;
+    private String folderFilePatterns = DEFAULT_FOLDER_FILE_PATTERNS;
+    private String followGlob = DEFAULT_FOLLOW_GLOB;
 
     public AppearanceSettings() {
     }
@@ -42,12 +57,96 @@ public class AppearanceSettings {
         this.codeAreaBackgroundColor = codeAreaBackgroundColor;
     }
 
+    /**
+     * Maximum number of lines kept in the log view while tailing
+     */
+    public int getScrollbackLines() {
+        return scrollbackLines;
+    }
+
+    public void setScrollbackLines(int scrollbackLines) {
+        this.scrollbackLines = scrollbackLines;
+    }
+
+    /**
+     * Maximum amount of text, in megabytes, kept in the log view while tailing
+     */
+    public int getScrollbackMegabytes() {
+        return scrollbackMegabytes;
+    }
+
+    public void setScrollbackMegabytes(int scrollbackMegabytes) {
+        this.scrollbackMegabytes = scrollbackMegabytes;
+    }
+
+    /**
+     * Number of lines read from the end of a file when it is opened
+     */
+    public int getOpenLines() {
+        return openLines;
+    }
+
+    public void setOpenLines(int openLines) {
+        this.openLines = openLines;
+    }
+
+    /**
+     * Upper bound, in megabytes, on what is read from the end of a file when it is opened
+     */
+    public int getOpenMegabytes() {
+        return openMegabytes;
+    }
+
+    public void setOpenMegabytes(int openMegabytes) {
+        this.openMegabytes = openMegabytes;
+    }
+
+    /**
+     * What the tailer does when the log view cannot keep up with the file
+     */
+    public BackpressurePolicy getBackpressure() {
+        return backpressure;
+    }
+
+    public void setBackpressure(BackpressurePolicy backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * Comma separated file name globs that select the log files of an opened folder
+     */
+    public String getFolderFilePatterns() {
+        return folderFilePatterns;
+    }
+
+    public void setFolderFilePatterns(String folderFilePatterns) {
+        this.folderFilePatterns = folderFilePatterns;
+    }
+
+    /**
+     * File name glob of the files a followed folder switches to when a newer one appears
+     */
+    public String getFollowGlob() {
+        return followGlob;
+    }
+
+    public void setFollowGlob(String followGlob) {
+        this.followGlob = followGlob;
+    }
+
     @Override
     public String toString() {
         return "AppearanceSettings{" +
                 "fontSize=" + fontSize +
                 ", fontWeight='" + fontWeight + '\'' +
                 ", codeAreaBackgroundColor='" + codeAreaBackgroundColor + '\'' +
+                ", scrollbackLines=" + scrollbackLines +
+                ", scrollbackMegabytes=" + scrollbackMegabytes +
+                ", openLines=" + openLines +
+                ", openMegabytes=" + openMegabytes +
+                ", backpressure=" + backpressure +
+                ", folderFilePatterns='" + folderFilePatterns + '\'' +
+                ", followGlob='" + followGlob + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,40 @@
+package org.taillogs.taillogs.config;
+
+/**
+ * What the tailer does when more output is waiting for the log view than it may hold
+ */
+public enum BackpressurePolicy {
+    /** Stop reading the file until the view has caught up */
+    BLOCK("Block reading"),
+    /** Keep reading and drop the oldest lines still waiting to be shown */
+    COALESCE("Coalesce"),
+    /** Drop everything waiting and continue at the current end of the file */
+    SKIP_TO_LIVE("Skip to live end");
+
+    private final String displayName;
+
+    BackpressurePolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    /**
+     * Policy with the given constant name, {@code fallback} if there is none
+     */
+    public static BackpressurePolicy fromName(String name, BackpressurePolicy fallback) {
+        for (BackpressurePolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        return fallback;
+    }
+}
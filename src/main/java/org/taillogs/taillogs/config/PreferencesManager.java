@@ -13,6 +13,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -45,6 +46,13 @@ public class PreferencesManager {
         }
     }
 
+    /**
+     * Directory under the preferences folder for derived data such as inflated logs, created on demand
+     */
+    public static Path getCacheDir(String name) throws IOException {
+        return Files.createDirectories(Paths.get(PREFS_DIR, name));
+    }
+
     public static AppearanceSettings loadAppearanceSettings() {
         try {
             File file = new File(PREFS_FILE);
@@ -55,7 +63,26 @@ public class PreferencesManager {
                     int fontSize = Integer.parseInt(lines[0].trim());
                     String fontWeight = lines[1].trim();
                     String backgroundColor = lines.length >= 3 ? lines[2].trim() : "#ffffff";
-                    return new AppearanceSettings(fontSize, fontWeight, backgroundColor);
+                    int scrollbackLines = lines.length >= 4 ? Integer.parseInt(lines[3].trim()) : AppearanceSettings.DEFAULT_SCROLLBACK_LINES;
+                    int scrollbackMegabytes = lines.length >= 5 ? Integer.parseInt(lines[4].trim()) : AppearanceSettings.DEFAULT_SCROLLBACK_MEGABYTES;
+                    int openLines = lines.length >= 6 ? Integer.parseInt(lines[5].trim()) : AppearanceSettings.DEFAULT_OPEN_LINES;
+                    int openMegabytes = lines.length >= 7 ? Integer.parseInt(lines[6].trim()) : AppearanceSettings.DEFAULT_OPEN_MEGABYTES;
+                    BackpressurePolicy backpressure = lines.length >= 8
+                            ? BackpressurePolicy.fromName(lines[7].trim(), AppearanceSettings.DEFAULT_BACKPRESSURE)
+                            : AppearanceSettings.DEFAULT_BACKPRESSURE;
+                    AppearanceSettings settings = new AppearanceSettings(fontSize, fontWeight, backgroundColor);
+                    settings.setScrollbackLines(scrollbackLines);
+                    settings.setScrollbackMegabytes(scrollbackMegabytes);
+                    settings.setOpenLines(openLines);
+                    settings.setOpenMegabytes(openMegabytes);
+                    settings.setBackpressure(backpressure);
+                    if (lines.length >= 9 && !lines[8].isBlank()) {
+                        settings.setFolderFilePatterns(lines[8].trim());
+                    }
+                    if (lines.length >= 10 && !lines[9].isBlank()) {
+                        settings.setFollowGlob(lines[9].trim());
+                    }
+                    return settings;
                 }
             }
         } catch (IOException | NumberFormatException e) {
@@ -66,7 +93,12 @@ public class PreferencesManager {
 
     public static void saveAppearanceSettings(AppearanceSettings settings) {
         try {
-            String content = settings.getFontSize() + "\n" + settings.getFontWeight() + "\n" + settings.getCodeAreaBackgroundColor();
+            String content = settings.getFontSize() + "\n" + settings.getFontWeight() + "\n" + settings.getCodeAreaBackgroundColor()
+                    + "\n" + settings.getScrollbackLines() + "\n" + settings.getScrollbackMegabytes()
+                    + "\n" + settings.getOpenLines() + "\n" + settings.getOpenMegabytes()
+                    + "\n" + settings.getBackpressure().name()
+                    + "\n" + settings.getFolderFilePatterns()
+                    + "\n" + settings.getFollowGlob();
             Files.write(Paths.get(PREFS_FILE), content.getBytes());
         } catch (IOException e) {
             System.err.println("Failed to save preferences: " + e.getMessage());
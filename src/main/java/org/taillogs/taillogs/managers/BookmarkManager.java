@@ -43,6 +43,20 @@ public class BookmarkManager {
         saveBookmarks();
     }
 
+    /**
+     * Move every bookmark by {@code delta} lines after lines were inserted or removed above it.
+     * Bookmarks whose line was removed are dropped.
+     */
+    public void shiftLines(int delta) {
+        if (delta == 0 || bookmarks.isEmpty()) return;
+
+        bookmarks.removeIf(b -> b.getLineNumber() + delta < 1);
+        for (Bookmark bookmark : bookmarks) {
+            bookmark.setLineNumber(bookmark.getLineNumber() + delta);
+        }
+        saveBookmarks();
+    }
+
     public ObservableList<Bookmark> getBookmarks() {
         return bookmarks;
     }
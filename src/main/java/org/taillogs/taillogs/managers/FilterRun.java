@@ -0,0 +1,333 @@
+package org.taillogs.taillogs.managers;
+
+import org.taillogs.taillogs.utils.LineBitmap;
+import org.taillogs.taillogs.utils.LineIndex;
+import org.taillogs.taillogs.utils.PagedDocument;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * One pass of the filter rules over a {@link PagedDocument}, run in parallel on the common
+ * fork-join pool. The document is cut into line aligned chunks that are decoded and
+ * evaluated independently into {@link RuleMatches} segments; their matched lines are handed
+ * on strictly in file order, each as soon as every chunk before it is done. The first chunk
+ * is small and filtered before the rest are started, so the first screenful of matches
+ * shows up right away.
+ * Chunks are split by bytes and numbered as they are handed on, so a run does not wait for
+ * the line index of a file that is still being indexed.
+ * Once the bitmaps of every rule are known, {@link #show} hands on the lines of a combined
+ * bitmap the same way without evaluating any rule, reading only the matched lines.
+ * A run is cancelled with {@link #cancel()}, after which nothing more is handed on.
+ */
+public final class FilterRun {
+    private static final long FIRST_CHUNK = 256L * 1024;
+    private static final long CHUNK_SIZE = 4L * 1024 * 1024;
+    private static final int CANCEL_CHECK_LINES = 4096;
+    private static final int SHOW_CHUNK = 1024 * 1024;
+    /** Matched lines further apart than this are read separately rather than with the lines between */
+    private static final long SHOW_GAP = 4L * 1024;
+
+    private final PagedDocument document;
+    private final long end;
+    private final RuleMatches matches;
+    private final int[] required;
+    private final Consumer<Progress> progress;
+    private final CompletableFuture<Progress> completion = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int published = 0;
+    private long matchedLines = 0;
+    private long scannedLines = 0;
+
+    private FilterRun(PagedDocument document, long end, RuleMatches matches, int[] required, Consumer<Progress> progress) {
+        this.document = document;
+        this.end = end;
+        this.matches = matches;
+        this.required = required;
+        this.progress = progress;
+    }
+
+    /**
+     * Filter {@code document} up to {@code end} in the background; what follows is left to
+     * the tailer. Every rule of {@code matches} is evaluated and its lines appended to it, the
+     * lines matching the rules of {@code required} are shown. {@code progress} gets the
+     * matched lines of each part of the file in order, on a pool thread.
+     */
+    public static FilterRun start(PagedDocument document, long end, RuleMatches matches, int[] required,
+                                  Consumer<Progress> progress) {
+        FilterRun run = new FilterRun(document, end, matches, required, progress);
+        ForkJoinPool.commonPool().execute(run::run);
+        return run;
+    }
+
+    /**
+     * Hand on the lines of {@code document} in {@code lines} in the background, read with the
+     * offsets of {@code index}, which must cover them. {@code lineCount} is the number of lines
+     * the bitmap was built over.
+     */
+    public static FilterRun show(PagedDocument document, LineIndex index, LineBitmap lines, long lineCount,
+                                 Consumer<Progress> progress) {
+        FilterRun run = new FilterRun(document, 0, null, null, progress);
+        ForkJoinPool.commonPool().execute(() -> run.show(index, lines, lineCount));
+        return run;
+    }
+
+    /**
+     * Completes with the last progress once the run is done, exceptionally if it failed or was cancelled
+     */
+    public CompletableFuture<Progress> getCompletion() {
+        return completion;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Stop the run; chunks in flight finish their current lines and are dropped
+     */
+    public void cancel() {
+        cancelled = true;
+        completion.completeExceptionally(new CancellationException("Filter run cancelled"));
+    }
+
+    private void run() {
+        try {
+            long end = Math.min(this.end, document.size());
+            long start = 0;
+            long size = FIRST_CHUNK;
+            while (start < end) {
+                // Bytes past the end are left out even when they complete a line
+                long chunkEnd = Math.min(end, document.nextLineStart(Math.min(end, start + size)));
+                if (chunkEnd <= start) {
+                    chunkEnd = end;
+                }
+                chunks.add(new Chunk(start, chunkEnd));
+                start = chunkEnd;
+                size = CHUNK_SIZE;
+            }
+            if (chunks.isEmpty()) {
+                completion.complete(new Progress("", 0, 0, 0));
+                return;
+            }
+            // The first screenful, filtered before anything competes with it
+            filter(chunks.get(0));
+            if (chunks.size() > 1) {
+                ForkJoinPool.commonPool().invoke(new ChunkScan(1, chunks.size()));
+            }
+        } catch (RuntimeException | IOException e) {
+            completion.completeExceptionally(e);
+        }
+    }
+
+    private void filter(Chunk chunk) {
+        if (cancelled) {
+            return;
+        }
+        String text;
+        try {
+            text = document.decode(chunk.start, chunk.end);
+        } catch (IOException e) {
+            completion.completeExceptionally(e);
+            cancelled = true;
+            return;
+        }
+        RuleMatches.Segment segment = matches.newSegment(required, chunk.start, chunk.end);
+        int lineStart = 0;
+        int length = text.length();
+        while (lineStart < length) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            // Rules see a CRLF line without its carriage return, as in the normalized view
+            int contentEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            segment.add(text.substring(lineStart, contentEnd));
+            if (segment.getLines() % CANCEL_CHECK_LINES == 0 && cancelled) {
+                return;
+            }
+            lineStart = lineEnd + 1;
+        }
+        chunk.segment = segment;
+        chunk.text = segment.getShown();
+        chunk.lines = segment.getLines();
+        chunk.matches = segment.getShownLines();
+        publish(chunk);
+    }
+
+    private void show(LineIndex index, LineBitmap lines, long lineCount) {
+        try {
+            LineGroups groups = new LineGroups(index, lineCount);
+            if (!lines.forEach(groups)) {
+                return;
+            }
+            groups.flush();
+            Progress last = new Progress(groups.shown.toString(), groups.matched, lineCount, groups.end);
+            if (!cancelled) {
+                progress.accept(last);
+                completion.complete(last);
+            }
+        } catch (UncheckedIOException e) {
+            completion.completeExceptionally(e.getCause());
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+        }
+    }
+
+    // Hand on every finished chunk whose predecessors have all been handed on
+    private synchronized void publish(Chunk chunk) {
+        chunk.done = true;
+        while (!cancelled && published < chunks.size() && chunks.get(published).done) {
+            Chunk next = chunks.get(published++);
+            matches.append(next.segment);
+            next.segment = null;
+            matchedLines += next.matches;
+            scannedLines += next.lines;
+            Progress update = new Progress(next.text, matchedLines, scannedLines, next.end);
+            next.text = null;
+            progress.accept(update);
+            if (published == chunks.size()) {
+                completion.complete(update);
+            }
+        }
+    }
+
+    /**
+     * Matched lines of the next part of the file with the totals so far
+     */
+    public static class Progress {
+        /** Matched lines of this part, each followed by a newline */
+        public final String text;
+        public final long matchedLines;
+        public final long scannedLines;
+        /** Offset up to which the file has been filtered */
+        public final long filteredEnd;
+
+        public Progress(String text, long matchedLines, long scannedLines, long filteredEnd) {
+            this.text = text;
+            this.matchedLines = matchedLines;
+            this.scannedLines = scannedLines;
+            this.filteredEnd = filteredEnd;
+        }
+    }
+
+    private static class Chunk {
+        final long start;
+        final long end;
+        RuleMatches.Segment segment;
+        String text;
+        int lines;
+        int matches;
+        boolean done;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Lines of a bitmap collected into groups of nearby lines, each group read from the
+     * document at once; the lines read are handed on about every {@link #SHOW_CHUNK} chars
+     */
+    private class LineGroups implements LongPredicate {
+        private final LineIndex index;
+        private final long lineCount;
+        private final long[] group = new long[1024];
+        private int grouped = 0;
+        private long end = 0;
+        private long matched = 0;
+        private long limit = FIRST_CHUNK;
+        final StringBuilder shown = new StringBuilder();
+
+        LineGroups(LineIndex index, long lineCount) {
+            this.index = index;
+            this.lineCount = lineCount;
+        }
+
+        @Override
+        public boolean test(long line) {
+            long start = index.lineStart(line);
+            if (grouped > 0 && (start - end > SHOW_GAP || grouped == group.length)) {
+                flush();
+                if (shown.length() >= limit) {
+                    progress.accept(new Progress(shown.toString(), matched, lineCount, end));
+                    shown.setLength(0);
+                    limit = SHOW_CHUNK;
+                }
+            }
+            group[grouped++] = line;
+            long next = index.lineStart(line + 1);
+            end = next >= 0 ? next : index.getIndexedEnd();
+            return !cancelled;
+        }
+
+        // Read the lines of the group at once and keep those in it
+        void flush() {
+            if (grouped == 0) {
+                return;
+            }
+            String text;
+            try {
+                text = document.decode(index.lineStart(group[0]), end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            long line = group[0];
+            int lineStart = 0;
+            for (int i = 0; i < grouped; i++) {
+                while (line < group[i]) {
+                    lineStart = text.indexOf('\n', lineStart) + 1;
+                    line++;
+                }
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = text.length();
+                }
+                shown.append(text, lineStart, lineEnd).append('\n');
+            }
+            matched += grouped;
+            grouped = 0;
+        }
+    }
+
+    /**
+     * Filters chunks [from, to), the leftmost ones first on the calling thread
+     */
+    @SuppressWarnings("serial") // Fork-join tasks are never serialized
+    private class ChunkScan extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        ChunkScan(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChunkScan right = new ChunkScan(middle, to);
+                right.fork();
+                new ChunkScan(from, middle).compute();
+                right.join();
+                return;
+            }
+            filter(chunks.get(from));
+        }
+    }
+}
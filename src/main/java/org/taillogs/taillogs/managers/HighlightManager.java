@@ -9,6 +9,7 @@ import org.fxmisc.richtext.model.StyleSpansBuilder;
 import org.taillogs.taillogs.config.PreferencesManager;
 import org.taillogs.taillogs.config.ProjectSettings;
 import org.taillogs.taillogs.models.HighlightPattern;
+import org.taillogs.taillogs.utils.LiteralMatcher;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -22,6 +23,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -33,6 +35,7 @@ public class HighlightManager {
     private long cssVersion = 0;
     private String currentFilePath;
     private final Map<String, Boolean> projectEnabledDefaults = new HashMap<>();
+    private CompiledHighlights compiledHighlights;
 
     public HighlightManager() {
         this.patterns = FXCollections.observableArrayList();
@@ -124,47 +127,28 @@ public class HighlightManager {
      * Build combined highlighting from log levels and custom patterns.
      * Priority (highest to lowest): search highlights > custom patterns > log levels
      */
-    public StyleSpans<Collection<String>> buildCombinedHighlighting(String text) {
+    public StyleSpans<Collection<String>> buildCombinedHighlighting(CharSequence text) {
         System.out.println("[HighlightManager] buildCombinedHighlighting called, text length: " + text.length());
         
-        // Collect all enabled patterns with their compiled regex
-        List<CompiledPattern> compiledPatterns = new ArrayList<>();
-        
-        // Add log level patterns first (lower priority)
-        compiledPatterns.add(new CompiledPattern(Pattern.compile("ERROR", Pattern.CASE_INSENSITIVE), "error", false));
-        compiledPatterns.add(new CompiledPattern(Pattern.compile("WARN", Pattern.CASE_INSENSITIVE), "warn", false));
-        compiledPatterns.add(new CompiledPattern(Pattern.compile("INFO", Pattern.CASE_INSENSITIVE), "info", false));
-        
-        // Add custom patterns (higher priority - will override log levels)
-        int customPatternCount = 0;
-        for (HighlightPattern hp : patterns) {
-            if (hp.isEnabled()) {
-                try {
-                    Pattern regex;
-                    if (hp.isRegex()) {
-                        regex = Pattern.compile(hp.getPattern(), Pattern.CASE_INSENSITIVE);
-                    } else {
-                        regex = Pattern.compile(Pattern.quote(hp.getPattern()), Pattern.CASE_INSENSITIVE);
-                    }
-                    String normalizedColor = normalizeColor(hp.getColor());
-                    String colorClass = "highlight-" + normalizedColor.substring(1);
-                    compiledPatterns.add(new CompiledPattern(regex, colorClass, true));
-                    customPatternCount++;
-                    System.out.println("[HighlightManager] Added custom pattern: " + hp.getPattern() + " -> class: " + colorClass);
-                } catch (Exception e) {
-                    System.err.println("[HighlightManager] Invalid regex pattern: " + hp.getPattern() + " - " + e.getMessage());
-                }
-            }
-        }
-        
-        System.out.println("[HighlightManager] Total patterns to apply: " + compiledPatterns.size() + " (custom: " + customPatternCount + ")");
-        
-        // Find all matches for all patterns
+        CompiledHighlights compiled = getCompiledHighlights();
+        System.out.println("[HighlightManager] Total patterns to apply: " + compiled.patternCount + " (custom: " + compiled.customCount + ")");
+
+        // Find all matches for all patterns: the literals in one pass, then each regex
         List<Match> allMatches = new ArrayList<>();
-        for (CompiledPattern cp : compiledPatterns) {
+        int[] literalEnds = new int[compiled.literals.size()];
+        compiled.literals.findAll(text, (literal, start, end) -> {
+            // Like Matcher.find, skip an occurrence overlapping the previous one of the same literal
+            if (start >= literalEnds[literal]) {
+                literalEnds[literal] = end;
+                CompiledPattern cp = compiled.literalPatterns[literal];
+                allMatches.add(new Match(start, end, cp.styleClass, cp.isCustom, cp.order));
+            }
+            return true;
+        });
+        for (CompiledPattern cp : compiled.regexPatterns) {
             Matcher m = cp.pattern.matcher(text);
             while (m.find()) {
-                allMatches.add(new Match(m.start(), m.end(), cp.styleClass, cp.isCustom));
+                allMatches.add(new Match(m.start(), m.end(), cp.styleClass, cp.isCustom, cp.order));
             }
         }
         
@@ -177,7 +161,7 @@ public class HighlightManager {
             // If same start, custom patterns have higher priority
             if (a.isCustom && !b.isCustom) return -1;
             if (!a.isCustom && b.isCustom) return 1;
-            return 0;
+            return Integer.compare(a.order, b.order);
         });
         
         // Merge overlapping matches - custom patterns take precedence
@@ -247,15 +231,24 @@ public class HighlightManager {
         return builder.create();
     }
 
+    /**
+     * The enabled patterns compiled for highlighting, recompiled only after they changed
+     */
+    private CompiledHighlights getCompiledHighlights() {
+        if (compiledHighlights == null || !compiledHighlights.isCompiledFrom(patterns)) {
+            compiledHighlights = new CompiledHighlights(patterns);
+        }
+        return compiledHighlights;
+    }
+
     /**
      * Get the style spans for custom highlighting without applying them.
      * Used for merging with search highlighting.
      */
-    public StyleSpans<Collection<String>> getCustomHighlightSpans(CodeArea codeArea) {
+    public StyleSpans<Collection<String>> getCustomHighlightSpans(CodeArea codeArea, CharSequence text) {
         System.out.println("[HighlightManager] getCustomHighlightSpans called");
 
-        String text = codeArea.getText();
-        if (text.isEmpty()) {
+        if (text.length() == 0) {
             System.out.println("[HighlightManager] Text is empty");
             // Return empty spans
             StyleSpansBuilder<Collection<String>> builder = new StyleSpansBuilder<>();
@@ -277,11 +270,13 @@ public class HighlightManager {
         }
     }
 
-    public void applyCombinedHighlighting(CodeArea codeArea) {
+    /**
+     * Highlight {@code codeArea}, reading its content from {@code text} so the area text is not copied.
+     */
+    public void applyCombinedHighlighting(CodeArea codeArea, CharSequence text) {
         System.out.println("[HighlightManager] applyCombinedHighlighting called");
 
-        String text = codeArea.getText();
-        if (text.isEmpty()) {
+        if (text.length() == 0) {
             System.out.println("[HighlightManager] Text is empty, skipping highlighting");
             return;
         }
@@ -301,6 +296,32 @@ public class HighlightManager {
         }
     }
 
+    /**
+     * Highlight only the lines from the one containing {@code from} to the end, for text appended
+     * to an area whose earlier lines are already styled. The stylesheet is left alone unless none
+     * has been generated yet, since the patterns have not changed.
+     */
+    public void applyCombinedHighlighting(CodeArea codeArea, CharSequence text, int from) {
+        int start = Math.max(0, Math.min(from, text.length()));
+        while (start > 0 && text.charAt(start - 1) != '\n') {
+            start--;
+        }
+        if (start >= text.length()) {
+            return;
+        }
+        if (currentCssPath == null) {
+            updateCustomStylesheet(codeArea);
+        }
+
+        try {
+            StyleSpans<Collection<String>> appended = buildCombinedHighlighting(text.subSequence(start, text.length()));
+            codeArea.setStyleSpans(start, appended);
+        } catch (Exception e) {
+            System.err.println("[HighlightManager] Error applying style spans: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Update the custom stylesheet with current highlight patterns.
      * Uses versioned filenames to force JavaFX to reload the stylesheet.
@@ -512,12 +533,14 @@ public class HighlightManager {
         int end;
         String styleClass;
         boolean isCustom;
+        int order;
 
-        Match(int start, int end, String styleClass, boolean isCustom) {
+        Match(int start, int end, String styleClass, boolean isCustom, int order) {
             this.start = start;
             this.end = end;
             this.styleClass = styleClass;
             this.isCustom = isCustom;
+            this.order = order;
         }
     }
     
@@ -525,11 +548,101 @@ public class HighlightManager {
         Pattern pattern;
         String styleClass;
         boolean isCustom;
+        int order;
         
-        CompiledPattern(Pattern pattern, String styleClass, boolean isCustom) {
+        CompiledPattern(Pattern pattern, String styleClass, boolean isCustom, int order) {
             this.pattern = pattern;
             this.styleClass = styleClass;
             this.isCustom = isCustom;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Log levels and enabled custom patterns, split into the plain ones, found together by one
+     * case-insensitive {@link LiteralMatcher}, and the regexes, which are matched one by one.
+     * Order is the priority among matches starting at the same position, as when every
+     * pattern was a regex matched in turn.
+     */
+    private class CompiledHighlights {
+        private final HighlightPattern[] sources;
+        private final String[] sourcePatterns;
+        private final String[] sourceColors;
+        private final boolean[] sourceRegex;
+        private final boolean[] sourceEnabled;
+
+        final LiteralMatcher literals;
+        final CompiledPattern[] literalPatterns;
+        final List<CompiledPattern> regexPatterns = new ArrayList<>();
+        final int patternCount;
+        final int customCount;
+
+        CompiledHighlights(List<HighlightPattern> highlightPatterns) {
+            int count = highlightPatterns.size();
+            sources = highlightPatterns.toArray(new HighlightPattern[0]);
+            sourcePatterns = new String[count];
+            sourceColors = new String[count];
+            sourceRegex = new boolean[count];
+            sourceEnabled = new boolean[count];
+
+            List<String> literalTexts = new ArrayList<>();
+            List<CompiledPattern> literalList = new ArrayList<>();
+            // Log level patterns first (lower priority)
+            String[][] levels = {{"ERROR", "error"}, {"WARN", "warn"}, {"INFO", "info"}};
+            for (String[] level : levels) {
+                literalTexts.add(level[0]);
+                literalList.add(new CompiledPattern(null, level[1], false, literalList.size()));
+            }
+            int order = literalList.size();
+
+            // Custom patterns (higher priority - will override log levels)
+            int custom = 0;
+            for (int i = 0; i < count; i++) {
+                HighlightPattern hp = sources[i];
+                sourcePatterns[i] = hp.getPattern();
+                sourceColors[i] = hp.getColor();
+                sourceRegex[i] = hp.isRegex();
+                sourceEnabled[i] = hp.isEnabled();
+                if (!hp.isEnabled()) {
+                    continue;
+                }
+                try {
+                    String normalizedColor = normalizeColor(hp.getColor());
+                    String colorClass = "highlight-" + normalizedColor.substring(1);
+                    if (hp.isRegex()) {
+                        Pattern regex = Pattern.compile(hp.getPattern(), Pattern.CASE_INSENSITIVE);
+                        regexPatterns.add(new CompiledPattern(regex, colorClass, true, order++));
+                    } else {
+                        literalTexts.add(Objects.requireNonNull(hp.getPattern(), "pattern"));
+                        literalList.add(new CompiledPattern(null, colorClass, true, order++));
+                    }
+                    custom++;
+                    System.out.println("[HighlightManager] Added custom pattern: " + hp.getPattern() + " -> class: " + colorClass);
+                } catch (Exception e) {
+                    System.err.println("[HighlightManager] Invalid regex pattern: " + hp.getPattern() + " - " + e.getMessage());
+                }
+            }
+            literals = new LiteralMatcher(literalTexts, true);
+            literalPatterns = literalList.toArray(new CompiledPattern[0]);
+            patternCount = order;
+            customCount = custom;
+        }
+
+        /**
+         * True while {@code highlightPatterns} holds the same patterns with the same settings
+         */
+        boolean isCompiledFrom(List<HighlightPattern> highlightPatterns) {
+            if (highlightPatterns.size() != sources.length) {
+                return false;
+            }
+            for (int i = 0; i < sources.length; i++) {
+                HighlightPattern hp = highlightPatterns.get(i);
+                if (hp != sources[i] || hp.getPattern() != sourcePatterns[i] || hp.getColor() != sourceColors[i]
+                        || hp.isRegex() != sourceRegex[i] || hp.isEnabled() != sourceEnabled[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
 }
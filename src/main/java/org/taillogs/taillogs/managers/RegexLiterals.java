@@ -0,0 +1,195 @@
+package org.taillogs.taillogs.managers;
+
+/**
+ * Literal prefilters for regex filter rules: the longest literal every match of a regex has
+ * to contain, checked before the regex runs so most lines are rejected without it.
+ */
+final class RegexLiterals {
+    private static final int MIN_PREFILTER_LENGTH = 2;
+
+    private RegexLiterals() {
+    }
+
+    /**
+     * Longest run of literal characters that every match of {@code regex} contains, null if
+     * none of at least {@link #MIN_PREFILTER_LENGTH} can be found. Conservative: gives up on
+     * top-level alternation and inline flags, and treats groups, classes, escapes other than
+     * escaped punctuation, and quantified characters as breaks between runs. Escapes are
+     * skipped whole, so the digits of {@code \x41} or of a unicode escape never join a run.
+     */
+    static String requiredLiteral(String regex) {
+        if (regex.contains("(?")) {
+            return null;
+        }
+        String best = null;
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next;
+            char literal;
+            if (c == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (c == '\\' || ".^$[(){}*+?".indexOf(c) >= 0) {
+                literal = 0;
+                next = skipAtom(regex, i);
+            } else if (c == '|') {
+                // Top-level alternation, no literal is required by every branch
+                return null;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+
+            char quantifier = next < regex.length() ? regex.charAt(next) : 0;
+            boolean optional = quantifier == '?' || quantifier == '*' || quantifier == '{';
+            if (literal != 0 && !optional) {
+                run.append(literal);
+            }
+            if (literal == 0 || optional || quantifier == '+') {
+                // The run cannot continue across anything that is not exactly one literal char
+                best = longer(best, run);
+                run.setLength(0);
+            }
+            i = skipQuantifier(regex, next);
+        }
+        best = longer(best, run);
+        return best != null && best.length() >= MIN_PREFILTER_LENGTH ? best : null;
+    }
+
+    private static String longer(String best, StringBuilder run) {
+        if (run.length() > 0 && (best == null || run.length() > best.length())) {
+            return run.toString();
+        }
+        return best;
+    }
+
+    // End of the non-literal atom at i: a group, a class, an escape or a single metachar
+    private static int skipAtom(String regex, int i) {
+        char c = regex.charAt(i);
+        if (c == '\\') {
+            return skipEscape(regex, i);
+        }
+        if (c == '[') {
+            return skipClass(regex, i);
+        }
+        if (c == '(') {
+            int depth = 0;
+            int j = i;
+            while (j < regex.length()) {
+                char d = regex.charAt(j);
+                if (d == '\\') {
+                    j = skipEscape(regex, j);
+                    continue;
+                }
+                if (d == '[') {
+                    j = skipClass(regex, j);
+                    continue;
+                }
+                if (d == '(') {
+                    depth++;
+                } else if (d == ')' && --depth == 0) {
+                    return j + 1;
+                }
+                j++;
+            }
+            return regex.length();
+        }
+        if (c == '{') {
+            int close = regex.indexOf('}', i);
+            return close < 0 ? regex.length() : close + 1;
+        }
+        return i + 1;
+    }
+
+    private static int skipClass(String regex, int i) {
+        int j = i + 1;
+        if (j < regex.length() && regex.charAt(j) == '^') {
+            j++;
+        }
+        if (j < regex.length() && regex.charAt(j) == ']') {
+            j++;
+        }
+        while (j < regex.length() && regex.charAt(j) != ']') {
+            j = regex.charAt(j) == '\\' ? skipEscape(regex, j) : j + 1;
+        }
+        return Math.min(regex.length(), j + 1);
+    }
+
+    // End of the whole escape at i, such as \x41, \x{41}, a unicode escape, \0101, \cA, \p{Lu}, \N{...} or \Q...\E
+    private static int skipEscape(String regex, int i) {
+        int length = regex.length();
+        if (i + 1 >= length) {
+            return length;
+        }
+        char c = regex.charAt(i + 1);
+        int end;
+        switch (c) {
+            case 'x':
+                end = i + 2 < length && regex.charAt(i + 2) == '{' ? closing(regex, i + 2, '}') : i + 4;
+                break;
+            case 'u':
+                end = i + 6;
+                break;
+            case '0':
+                // Up to three octal digits, the first of three no larger than 3
+                end = i + 2;
+                int max = i + 2 < length && regex.charAt(i + 2) <= '3' ? 3 : 2;
+                while (end < length && end - (i + 2) < max && regex.charAt(end) >= '0' && regex.charAt(end) <= '7') {
+                    end++;
+                }
+                break;
+            case 'c':
+                end = i + 3;
+                break;
+            case 'p':
+            case 'P':
+                end = i + 2 < length && regex.charAt(i + 2) == '{' ? closing(regex, i + 2, '}') : i + 3;
+                break;
+            case 'N':
+                end = closing(regex, i + 2, '}');
+                break;
+            case 'k':
+                end = closing(regex, i + 2, '>');
+                break;
+            case 'Q':
+                int quoteEnd = regex.indexOf("\\E", i + 2);
+                end = quoteEnd < 0 ? length : quoteEnd + 2;
+                break;
+            default:
+                end = i + 2;
+                // A back reference takes every digit that follows
+                while (c >= '1' && c <= '9' && end < length && Character.isDigit(regex.charAt(end))) {
+                    end++;
+                }
+        }
+        return Math.min(length, end);
+    }
+
+    private static int closing(String regex, int i, char close) {
+        int found = regex.indexOf(close, i);
+        return found < 0 ? regex.length() : found + 1;
+    }
+
+    // Skip a quantifier and its lazy or possessive suffix
+    private static int skipQuantifier(String regex, int i) {
+        if (i >= regex.length()) {
+            return i;
+        }
+        char c = regex.charAt(i);
+        int next;
+        if (c == '{') {
+            int close = regex.indexOf('}', i);
+            next = close < 0 ? regex.length() : close + 1;
+        } else if (c == '?' || c == '*' || c == '+') {
+            next = i + 1;
+        } else {
+            return i;
+        }
+        if (next < regex.length() && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+            next++;
+        }
+        return next;
+    }
+}
@@ -0,0 +1,300 @@
+package org.taillogs.taillogs.managers;
+
+import org.taillogs.taillogs.models.FilterRule;
+import org.taillogs.taillogs.utils.LineBitmap;
+import org.taillogs.taillogs.utils.LiteralMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Which lines of a document each filter rule matches, one {@link LineBitmap} per rule.
+ * Every rule is evaluated, enabled or not, while the document is scanned and as lines are
+ * tailed, so enabling, disabling or reordering rules afterwards only intersects bitmaps
+ * instead of filtering the file again. Rules with the same pattern and kind share a bitmap.
+ * Lines are evaluated into {@link Segment}s independently, which is safe from any thread,
+ * and added with {@link #append(Segment)} strictly in file order.
+ */
+public final class RuleMatches {
+    private final Map<String, Integer> keys = new HashMap<>();
+    /** Literal every match of a key contains, -1 if there is none */
+    private final int[] literalOf;
+    private final Pattern[] patterns;
+    private final boolean[] matchesAll;
+    private final boolean[] matchesNone;
+    private final LiteralMatcher literals;
+    private final LineBitmap[] bitmaps;
+    private long lineCount = 0;
+    private long end = 0;
+
+    private RuleMatches(List<FilterRule> rules) {
+        List<Integer> literalList = new ArrayList<>();
+        List<Pattern> patternList = new ArrayList<>();
+        List<Boolean> allList = new ArrayList<>();
+        List<Boolean> noneList = new ArrayList<>();
+        List<String> literalTexts = new ArrayList<>();
+        for (FilterRule rule : rules) {
+            String key = keyOf(rule);
+            if (keys.containsKey(key)) {
+                continue;
+            }
+            keys.put(key, keys.size());
+            int literal = -1;
+            Pattern pattern = null;
+            boolean all = false;
+            boolean none = false;
+            String text = rule.getPattern();
+            if (text == null) {
+                none = true;
+            } else if (!rule.isRegex()) {
+                if (text.isEmpty()) {
+                    all = true;
+                } else {
+                    literal = literalTexts.size();
+                    literalTexts.add(text);
+                }
+            } else {
+                try {
+                    pattern = Pattern.compile(text);
+                    String prefilter = RegexLiterals.requiredLiteral(text);
+                    if (prefilter != null) {
+                        literal = literalTexts.size();
+                        literalTexts.add(prefilter);
+                    }
+                } catch (PatternSyntaxException e) {
+                    // An invalid rule matches nothing
+                    System.err.println("Invalid filter pattern: " + text);
+                    none = true;
+                }
+            }
+            literalList.add(literal);
+            patternList.add(pattern);
+            allList.add(all);
+            noneList.add(none);
+        }
+        int count = keys.size();
+        literalOf = new int[count];
+        patterns = patternList.toArray(new Pattern[0]);
+        matchesAll = new boolean[count];
+        matchesNone = new boolean[count];
+        bitmaps = new LineBitmap[count];
+        for (int k = 0; k < count; k++) {
+            literalOf[k] = literalList.get(k);
+            matchesAll[k] = allList.get(k);
+            matchesNone[k] = noneList.get(k);
+            bitmaps[k] = new LineBitmap();
+        }
+        literals = literalTexts.isEmpty() ? null : new LiteralMatcher(literalTexts, false);
+    }
+
+    /**
+     * Bitmaps for every rule in {@code rules}, enabled or not, still empty
+     */
+    public static RuleMatches compile(List<FilterRule> rules) {
+        return new RuleMatches(rules);
+    }
+
+    /**
+     * True if every rule of {@code rules}, with its current pattern, has a bitmap here
+     */
+    public boolean covers(List<FilterRule> rules) {
+        for (FilterRule rule : rules) {
+            if (!keys.containsKey(keyOf(rule))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keys of the enabled rules of {@code rules}, which must be covered
+     */
+    public int[] requiredKeys(List<FilterRule> rules) {
+        return rules.stream()
+                .filter(FilterRule::isEnabled)
+                .mapToInt(rule -> keys.get(keyOf(rule)))
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * Lines matching every rule of {@code required}, a copy the caller owns
+     */
+    public synchronized LineBitmap combine(int[] required) {
+        if (required.length == 0) {
+            throw new IllegalArgumentException("No rule to combine");
+        }
+        // Smallest first, so every intersection is at most as large as the rarest rule
+        int[] order = Arrays.stream(required)
+                .boxed()
+                .sorted((a, b) -> Long.compare(bitmaps[a].cardinality(), bitmaps[b].cardinality()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        LineBitmap combined = bitmaps[order[0]].copy();
+        for (int i = 1; i < order.length && !combined.isEmpty(); i++) {
+            combined = combined.and(bitmaps[order[i]]);
+        }
+        return combined;
+    }
+
+    /**
+     * Number of lines added so far
+     */
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Offset in the document up to which lines were added
+     */
+    public synchronized long getEnd() {
+        return end;
+    }
+
+    /**
+     * Segment for the lines of the document from {@code start} to {@code end}, showing the
+     * lines that match every key of {@code required}
+     */
+    public Segment newSegment(int[] required, long start, long end) {
+        return new Segment(required, start, end);
+    }
+
+    /**
+     * Evaluate every line of {@code text}, the lines of the document from {@code start} to {@code end}
+     */
+    public Segment evaluate(String text, int[] required, long start, long end) {
+        Segment segment = new Segment(required, start, end);
+        int lineStart = 0;
+        int length = text.length();
+        while (lineStart < length) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            // Rules see a CRLF line without its carriage return, as in the normalized view
+            int contentEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            segment.add(text.substring(lineStart, contentEnd));
+            lineStart = lineEnd + 1;
+        }
+        return segment;
+    }
+
+    /**
+     * Add the lines of {@code segment}, which follow the lines added before
+     * @return false, adding nothing, if the segment does not start where those lines end
+     */
+    public synchronized boolean append(Segment segment) {
+        if (segment.start != end) {
+            return false;
+        }
+        for (int k = 0; k < bitmaps.length; k++) {
+            int[] found = segment.keyLines[k];
+            for (int i = 0; i < segment.keyCounts[k]; i++) {
+                bitmaps[k].append(lineCount + found[i]);
+            }
+        }
+        lineCount += segment.lines;
+        end = segment.end;
+        return true;
+    }
+
+    private static String keyOf(FilterRule rule) {
+        if (rule.getPattern() == null) {
+            return "none";
+        }
+        return (rule.isRegex() ? "regex:" : "text:") + rule.getPattern();
+    }
+
+    /**
+     * Rule matches of consecutive lines, numbered from the first line of the segment, and the
+     * lines matching the required rules. Used by one thread at a time.
+     */
+    public final class Segment {
+        private final int[] required;
+        private final long start;
+        private final long end;
+        private final int[][] keyLines = new int[bitmaps.length][];
+        private final int[] keyCounts = new int[bitmaps.length];
+        private final boolean[] matched = new boolean[bitmaps.length];
+        /** Literals found in the line being evaluated are stamped with its number plus one */
+        private final int[] seenAt;
+        private int stamp = 0;
+        private final LiteralMatcher.MatchHandler seen;
+        private final StringBuilder shown = new StringBuilder();
+        private int lines = 0;
+        private int shownLines = 0;
+
+        private Segment(int[] required, long start, long end) {
+            this.required = required;
+            this.start = start;
+            this.end = end;
+            seenAt = new int[literals != null ? literals.size() : 0];
+            seen = (literal, from, to) -> {
+                seenAt[literal] = stamp;
+                return true;
+            };
+        }
+
+        /**
+         * Evaluate the next line, given without its line break
+         * @return true if it matches every required rule
+         */
+        public boolean add(String line) {
+            stamp = lines + 1;
+            if (literals != null) {
+                literals.findAll(line, seen);
+            }
+            for (int k = 0; k < matched.length; k++) {
+                boolean match;
+                if (matchesAll[k]) {
+                    match = true;
+                } else if (matchesNone[k]) {
+                    match = false;
+                } else if (literalOf[k] >= 0 && seenAt[literalOf[k]] != stamp) {
+                    match = false;
+                } else {
+                    match = patterns[k] == null || patterns[k].matcher(line).find();
+                }
+                matched[k] = match;
+                if (match) {
+                    int[] found = keyLines[k];
+                    if (found == null) {
+                        found = keyLines[k] = new int[16];
+                    } else if (keyCounts[k] == found.length) {
+                        found = keyLines[k] = Arrays.copyOf(found, found.length * 2);
+                    }
+                    found[keyCounts[k]++] = lines;
+                }
+            }
+            lines++;
+            for (int k : required) {
+                if (!matched[k]) {
+                    return false;
+                }
+            }
+            shown.append(line).append('\n');
+            shownLines++;
+            return true;
+        }
+
+        public int getLines() {
+            return lines;
+        }
+
+        public int getShownLines() {
+            return shownLines;
+        }
+
+        /**
+         * Lines matching every required rule, each followed by a newline
+         */
+        public String getShown() {
+            return shown.toString();
+        }
+    }
+}
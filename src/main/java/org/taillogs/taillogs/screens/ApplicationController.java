@@ -3,6 +3,7 @@ package org.taillogs.taillogs.screens;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
@@ -12,6 +13,8 @@ import javafx.scene.control.Separator;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
+import javafx.util.StringConverter;
 import org.fxmisc.richtext.CodeArea;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
@@ -30,24 +33,41 @@ import javafx.animation.AnimationTimer;
 
 import org.taillogs.taillogs.managers.BookmarkManager;
 import org.taillogs.taillogs.managers.FilterManager;
+import org.taillogs.taillogs.managers.FilterRun;
 import org.taillogs.taillogs.managers.HighlightManager;
+import org.taillogs.taillogs.managers.RuleMatches;
 import org.taillogs.taillogs.models.Bookmark;
 import org.taillogs.taillogs.models.FilterRule;
 import org.taillogs.taillogs.models.HighlightPattern;
 import org.taillogs.taillogs.utils.FileOperations;
 import org.taillogs.taillogs.utils.FileOperations.TailThreadRef;
+import org.taillogs.taillogs.utils.FolderScanner;
 import org.taillogs.taillogs.utils.FontStylesUtil;
+import org.taillogs.taillogs.utils.GzipSpill;
+import org.taillogs.taillogs.utils.LineIndex;
+import org.taillogs.taillogs.utils.LogDocument;
+import org.taillogs.taillogs.utils.LogTimestamp;
+import org.taillogs.taillogs.utils.MergedTimeline;
+import org.taillogs.taillogs.utils.PagedDocument;
+import org.taillogs.taillogs.utils.PagedViewport;
 import org.taillogs.taillogs.utils.SyntaxHighlighter;
+import org.taillogs.taillogs.utils.TailBatch;
+import org.taillogs.taillogs.utils.TailScheduler;
 import org.taillogs.taillogs.config.AppearanceSettings;
 import org.taillogs.taillogs.config.PreferencesManager;
 import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -55,13 +75,24 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ApplicationController {
+    // Below this the display is only short of the line still being written
+    private static final long BEHIND_STATUS_BYTES = 64 * 1024;
+
     @FXML
     private Label fileInfoLabel;
     @FXML
+    private ComboBox<String> folderFilesCombo;
+    @FXML
     private Button pauseBtn;
     @FXML
     private Button clearBtn;
@@ -82,17 +113,39 @@ public class ApplicationController {
 
     private String currentFilePath;
     private String currentFolderPath;
-    private List<String> fileList;
-    private List<String> fileListFullPath;
+    // Files of the current folder in name order, filled in by a background scan
+    private ObservableList<String> fileListFullPath;
+    private FolderScanner folderScan;
+    // Folder follow: the folder is watched and each new file matching the follow glob is switched to
+    private boolean folderFollow = false;
+    private Path followedFolder;
+    private BiConsumer<WatchEvent.Kind<?>, Path> folderListener;
+    private List<PathMatcher> followMatchers = Collections.emptyList();
+    private int folderFollowGeneration = 0;
     private TailThreadRef tailThreadRef;
     private boolean pauseMode = false;
     private boolean sidebarVisible = true;
-    private String originalLogContent;
+    // Background filter pass over the current file, its generation tells its updates from older runs
+    private FilterRun filterRun;
+    private int filterGeneration = 0;
+    private boolean showingFiltered = false;
+    // Tailed lines matching the rules while a run is going, shown once the run is done
+    private final StringBuilder heldMatches = new StringBuilder();
+    private long filterMatched = 0;
+    private long filterScanned = 0;
+    // Lines of the current file each rule matches, complete once a scan and the tailed lines after it are all in
+    private RuleMatches ruleMatches;
+    private boolean ruleMatchesComplete = false;
+    private int[] requiredRules = new int[0];
+    private boolean filterRunScans = false;
+    // Tailed segments evaluated while a scan is going, added to the rule matches after it
+    private final List<RuleMatches.Segment> heldSegments = new ArrayList<>();
 
     // Multiple open files support
     private ObservableList<String> openFiles;
     private Map<String, String> fileContentCache; // Cache for file contents
     private Map<String, TailThreadRef> fileThreadRefs; // Track tailing threads for each file
+    private final Map<String, MergedTimeline> timelines = new HashMap<>(); // Merged views by timeline file
 
     private Runnable onBack;
     private AppearanceSettings appearanceSettings;
@@ -106,10 +159,19 @@ public class ApplicationController {
     private double pendingScrollDelta = 0.0;
     private AnimationTimer smoothScrollTimer;
 
+    // Line store behind the log area; reads go through its snapshots instead of logArea.getText()
+    private LogDocument logDocument;
+    // Paged view over the current file, only a bounded window of pages is held in the log area
+    private PagedViewport pagedViewport;
+    private boolean pageLoadScheduled = false;
+    private boolean wasTailingBeforeHistory = false;
+
     public void initialize() {
         tailThreadRef = new TailThreadRef();
-        fileList = java.util.Collections.emptyList();
-        fileListFullPath = java.util.Collections.emptyList();
+        logDocument = new LogDocument(logArea);
+        pagedViewport = new PagedViewport(logDocument);
+        fileListFullPath = folderFilesCombo.getItems();
+        setupFolderFiles();
 
         // Load appearance settings
         appearanceSettings = PreferencesManager.loadAppearanceSettings();
@@ -149,7 +211,23 @@ public class ApplicationController {
     }
 
     public void applyAppearanceSettings(AppearanceSettings settings) {
+        String previousFollowGlob = appearanceSettings != null ? appearanceSettings.getFollowGlob() : null;
+        boolean patternsChanged = appearanceSettings != null
+                && !appearanceSettings.getFolderFilePatterns().equals(settings.getFolderFilePatterns());
+        boolean followGlobChanged = !settings.getFollowGlob().equals(previousFollowGlob);
         this.appearanceSettings = settings;
+        if (patternsChanged && currentFolderPath != null) {
+            populateFiles(null);
+        }
+        if (folderFollow && (patternsChanged || followGlobChanged)) {
+            startFolderFollow();
+        }
+
+        // Scrollback and open-at-end budgets
+        pagedViewport.setScrollbackLimit(settings.getScrollbackLines(),
+                (long) settings.getScrollbackMegabytes() * 1024 * 1024);
+        pagedViewport.setOpenBudget(settings.getOpenLines(), (long) settings.getOpenMegabytes() * 1024 * 1024);
+        logDocument.getAppendQueue().setPolicy(settings.getBackpressure());
 
         // Apply to log text area
         logArea.setStyle(FontStylesUtil.getLogTextAreaStyle(settings));
@@ -216,6 +294,76 @@ public class ApplicationController {
 
         // Smooth scroll for log area
         setupSmoothScrolling();
+
+        // Load neighbouring pages when scrolling past the edges of the page window
+        setupPagedScrolling();
+    }
+
+    private void setupPagedScrolling() {
+        logArea.estimatedScrollYProperty().addListener((obs, oldVal, newVal) -> {
+            if (!pageLoadScheduled) {
+                pageLoadScheduled = true;
+                Platform.runLater(this::loadPagesAroundViewport);
+            }
+        });
+    }
+
+    private void loadPagesAroundViewport() {
+        try {
+            int paragraphCount = logArea.getParagraphs().size();
+            if (paragraphCount <= 1 || showingFiltered) {
+                // The filtered view holds the matches of the whole file, there are no pages around it
+                return;
+            }
+            int firstVisible = logArea.firstVisibleParToAllParIndex();
+            int lastVisible = logArea.lastVisibleParToAllParIndex();
+
+            if (firstVisible == 0 && pagedViewport.hasOlder()) {
+                if (pagedViewport.isFull()) {
+                    // The newest page is about to be dropped, so the live end leaves the view
+                    pauseForHistory();
+                }
+                int inserted = pagedViewport.loadOlderPage();
+                reapplyHighlighting();
+                logArea.showParagraphAtTop(inserted);
+                statusLabel.setText("Viewing history from byte " + pagedViewport.getWindowStart());
+            } else if (lastVisible >= paragraphCount - 1 && pagedViewport.isDetached()) {
+                int removed = pagedViewport.loadNewerPage();
+                reapplyHighlighting();
+                logArea.showParagraphAtBottom(Math.max(0, lastVisible - removed));
+                if (!pagedViewport.isDetached()) {
+                    resumeAfterHistory();
+                }
+            }
+        } catch (IOException | IllegalStateException | IndexOutOfBoundsException e) {
+            System.err.println("Failed to load page: " + e.getMessage());
+        } finally {
+            pageLoadScheduled = false;
+        }
+    }
+
+    private void pauseForHistory() {
+        if (currentFilePath != null && fileThreadRefs.containsKey(currentFilePath) && !pauseMode) {
+            wasTailingBeforeHistory = true;
+            fileThreadRefs.get(currentFilePath).setActive(false);
+            pauseMode = true;
+            updateButtonStyles();
+        }
+    }
+
+    private void resumeAfterHistory() {
+        if (currentFilePath == null || !fileThreadRefs.containsKey(currentFilePath)) {
+            return;
+        }
+        TailThreadRef threadRef = fileThreadRefs.get(currentFilePath);
+        threadRef.setFilePosition(pagedViewport.getWindowEnd());
+        if (wasTailingBeforeHistory) {
+            wasTailingBeforeHistory = false;
+            FileOperations.startTailing(currentFilePath, logDocument, threadRef, createHighlightingCallback());
+            pauseMode = false;
+            updateButtonStyles();
+            statusLabel.setText("Tailing: " + new File(currentFilePath).getName());
+        }
     }
 
     private void setupSmoothScrolling() {
@@ -445,9 +593,18 @@ public class ApplicationController {
             return;
         }
 
+        String folderPath = new File(filePath).getParent();
+        boolean folderChanged = !Objects.equals(folderPath, currentFolderPath);
         this.currentFilePath = filePath;
-        this.currentFolderPath = new File(filePath).getParent();
-        populateFiles();
+        this.currentFolderPath = folderPath;
+        if (folderChanged) {
+            populateFiles(null);
+            if (folderFollow) {
+                startFolderFollow();
+            }
+        } else {
+            folderFilesCombo.setValue(filePath);
+        }
 
         // Add file to open files list if not already open
         if (!openFiles.contains(filePath)) {
@@ -467,9 +624,17 @@ public class ApplicationController {
 
     public void setCurrentFolder(String folderPath) {
         this.currentFolderPath = folderPath;
-        populateFiles();
-        if (!fileListFullPath.isEmpty()) {
-            currentFilePath = fileListFullPath.get(0);
+        if (folderFollow) {
+            startFolderFollow();
+        }
+        // The first file is opened once the scan knows which one sorts first
+        populateFiles(() -> {
+            if (fileListFullPath.isEmpty() || !folderPath.equals(currentFolderPath)) {
+                return;
+            }
+            String newest = folderFollow ? newestFollowedFile() : null;
+            currentFilePath = newest != null ? newest : fileListFullPath.get(0);
+            folderFilesCombo.setValue(currentFilePath);
             // Add first file to open files
             if (!openFiles.contains(currentFilePath)) {
                 openFiles.add(currentFilePath);
@@ -483,25 +648,312 @@ public class ApplicationController {
             PreferencesManager.addRecentFile(currentFilePath);
 
             loadCurrentFile();
+        });
+    }
+
+    /**
+     * Show the files of the current folder by name and switch to the one picked
+     */
+    private void setupFolderFiles() {
+        folderFilesCombo.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(String path) {
+                return path == null ? "" : new File(path).getName();
+            }
+
+            @Override
+            public String fromString(String name) {
+                return null;
+            }
+        });
+        folderFilesCombo.setOnAction(event -> {
+            String selected = folderFilesCombo.getValue();
+            if (selected != null && !selected.equals(currentFilePath)) {
+                setCurrentFile(selected);
+            }
+        });
+    }
+
+    /**
+     * Rescan the current folder in the background; the file list fills in as batches are checked.
+     */
+    private void populateFiles(Runnable onScanned) {
+        if (folderScan != null) {
+            folderScan.cancel();
+            folderScan = null;
+        }
+        fileListFullPath.clear();
+        boolean hasFolder = currentFolderPath != null;
+        folderFilesCombo.setVisible(hasFolder);
+        folderFilesCombo.setManaged(hasFolder);
+        if (!hasFolder) {
+            return;
+        }
+
+        folderScan = FolderScanner.scan(currentFolderPath, appearanceSettings.getFolderFilePatterns(), found -> {
+            for (String path : found) {
+                addFolderFile(path);
+            }
+        }, () -> {
+            folderScan = null;
+            if (onScanned != null) {
+                onScanned.run();
+            }
+        });
+    }
+
+    private void addFolderFile(String path) {
+        int insertAt = Collections.binarySearch(fileListFullPath, path);
+        if (insertAt < 0) {
+            fileListFullPath.add(-insertAt - 1, path);
+        }
+        if (path.equals(currentFilePath)) {
+            folderFilesCombo.setValue(path);
         }
     }
 
-    private void populateFiles() {
+    /**
+     * Turn folder follow on or off. While on, the current folder is watched: new and deleted
+     * files update the file list without a rescan, and a new file matching the follow glob
+     * becomes the tailed file, keeping the highlights and filters in use.
+     * @return whether folder follow is on
+     */
+    public boolean setFolderFollow(boolean enable) {
+        stopFolderFollow();
+        if (!enable) {
+            statusLabel.setText("Folder follow off");
+            return false;
+        }
         if (currentFolderPath == null) {
-            fileList = java.util.Collections.emptyList();
-            fileListFullPath = java.util.Collections.emptyList();
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Follow Folder");
+            alert.setHeaderText("No folder open");
+            alert.setContentText("Open a folder, or a file in it, before following it.");
+            alert.showAndWait();
+            return false;
+        }
+        if (!TailScheduler.getInstance().isEventDriven()) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Follow Folder");
+            alert.setHeaderText("Cannot watch folders");
+            alert.setContentText("This platform does not support watching folders for changes.");
+            alert.showAndWait();
+            return false;
+        }
+        folderFollow = true;
+        startFolderFollow();
+        String newest = newestFollowedFile();
+        if (newest != null && !newest.equals(currentFilePath)) {
+            switchFollowedFile(newest);
+        } else {
+            statusLabel.setText("Following folder: " + new File(currentFolderPath).getName());
+        }
+        return true;
+    }
+
+    private void startFolderFollow() {
+        stopFolderFollow();
+        folderFollow = true;
+        followedFolder = Paths.get(currentFolderPath).toAbsolutePath();
+        followMatchers = FolderScanner.compilePatterns(appearanceSettings.getFollowGlob());
+        List<PathMatcher> listMatchers = FolderScanner.compilePatterns(appearanceSettings.getFolderFilePatterns());
+        List<PathMatcher> matchers = followMatchers;
+        int generation = folderFollowGeneration;
+
+        // Runs on the watcher thread; file checks happen here, list and tab changes on the FX thread
+        folderListener = (kind, file) -> {
+            if (file == null) {
+                // Events were lost, list the folder once
+                Platform.runLater(() -> {
+                    if (generation == folderFollowGeneration) {
+                        populateFiles(this::followNewestFile);
+                    }
+                });
+                return;
+            }
+            if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                // Appends are picked up by the tailer
+                return;
+            }
+            boolean created = kind == StandardWatchEventKinds.ENTRY_CREATE;
+            boolean listed = created && FolderScanner.matches(listMatchers, file)
+                    && FileOperations.isLikelyTextFile(file.toString());
+            boolean followed = created && FolderScanner.matches(matchers, file);
+            String path = file.toString();
+            Platform.runLater(() -> {
+                if (generation != folderFollowGeneration) {
+                    return;
+                }
+                if (!created) {
+                    fileListFullPath.remove(path);
+                    return;
+                }
+                if (listed) {
+                    addFolderFile(path);
+                }
+                if (followed && !path.equals(currentFilePath)) {
+                    switchFollowedFile(path);
+                }
+            });
+        };
+        TailScheduler.getInstance().watchDirectory(followedFolder, folderListener);
+    }
+
+    private void stopFolderFollow() {
+        if (followedFolder != null && folderListener != null) {
+            TailScheduler.getInstance().unwatchDirectory(followedFolder, folderListener);
+        }
+        followedFolder = null;
+        folderListener = null;
+        folderFollow = false;
+        folderFollowGeneration++;
+    }
+
+    /**
+     * Most recently modified file in the list that matches the follow glob, null if there is none
+     */
+    private String newestFollowedFile() {
+        String newest = null;
+        long newestModified = Long.MIN_VALUE;
+        for (String path : fileListFullPath) {
+            if (!FolderScanner.matches(followMatchers, Paths.get(path))) {
+                continue;
+            }
+            long modified = new File(path).lastModified();
+            if (modified > newestModified) {
+                newest = path;
+                newestModified = modified;
+            }
+        }
+        return newest;
+    }
+
+    private void followNewestFile() {
+        String newest = newestFollowedFile();
+        if (newest != null && !newest.equals(currentFilePath)) {
+            switchFollowedFile(newest);
+        }
+    }
+
+    /**
+     * Tail {@code path} in place of the current file, carrying over its highlights and filters
+     */
+    private void switchFollowedFile(String path) {
+        List<HighlightPattern> highlights = new ArrayList<>(highlightManager.getPatterns());
+        List<FilterRule> filters = new ArrayList<>(filterManager.getRules());
+        String previous = currentFilePath;
+
+        // The followed file takes over the previous one's tab rather than adding one per roll
+        if (previous != null) {
+            openFiles.remove(previous);
+        }
+        setCurrentFile(path);
+        if (!path.equals(currentFilePath)) {
+            return;
+        }
+
+        if (previous != null) {
+            highlightManager.applyPatternsToCurrentFile(highlights);
+            filterManager.applyRulesToCurrentFile(filters);
+            if (rightPanelController != null) {
+                rightPanelController.refreshHighlights();
+                rightPanelController.refreshFilters();
+            }
+            if (filterManager.hasActiveFilters()) {
+                applyFilteringToContent();
+            } else {
+                reapplyHighlighting();
+            }
+        }
+        updateTabBar();
+        statusLabel.setText("Following: " + new File(path).getName());
+    }
+
+    /**
+     * Merge the open files into one timeline ordered by the timestamps of their lines and
+     * open it as a tab of its own that keeps merging what the files append.
+     */
+    public void openMergedTimeline() {
+        List<Path> sources = new ArrayList<>();
+        for (String filePath : openFiles) {
+            if (!timelines.containsKey(filePath)) {
+                sources.add(Paths.get(filePath));
+            }
+        }
+        if (sources.size() < 2) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Merge Timeline");
+            alert.setHeaderText("Not enough files open");
+            alert.setContentText("Open at least two files to merge them into one timeline.");
+            alert.showAndWait();
             return;
         }
 
-        fileListFullPath = FileOperations.getLogFilesFullPath(currentFolderPath);
-        fileList = java.util.Collections.emptyList();
+        Path output;
+        try {
+            String key = Integer.toHexString(sources.stream().map(Path::toString).sorted().toList().hashCode());
+            Path directory = PreferencesManager.getCacheDir("timeline");
+            removeStaleTimelines(directory);
+            output = directory.resolve("timeline-" + key + ".log");
+        } catch (IOException e) {
+            System.err.println("Failed to create timeline folder: " + e.getMessage());
+            statusLabel.setText("Failed to merge files");
+            return;
+        }
+        if (timelines.containsKey(output.toString())) {
+            // Merging the same files again starts the timeline over
+            closeFile(output.toString());
+        }
+
+        MergedTimeline timeline = new MergedTimeline(sources, output);
+        // Registered while merging too, so the file is deleted if the app closes before it is done
+        timelines.put(output.toString(), timeline);
+        String merging = "Merging " + sources.size() + " files";
+        statusLabel.setText(merging + "...");
+        timeline.mergeHistoryAsync(merged -> Platform.runLater(
+                () -> statusLabel.setText(merging + ": " + formatBytes(merged))))
+                .whenComplete((ignored, error) -> Platform.runLater(() -> {
+                    if (timelines.get(output.toString()) != timeline) {
+                        // Closed or merged again while merging, already discarded
+                        return;
+                    }
+                    if (error != null) {
+                        System.err.println("Failed to merge files: " + error.getMessage());
+                        statusLabel.setText("Failed to merge files");
+                        timelines.remove(output.toString());
+                        timeline.discard();
+                        return;
+                    }
+                    try {
+                        timeline.startLive();
+                    } catch (IOException e) {
+                        System.err.println("Failed to follow merged files: " + e.getMessage());
+                    }
+                    openTimeline(output.toString());
+                }));
+    }
 
-        if (!fileListFullPath.isEmpty()) {
-            fileList = fileListFullPath.stream()
-                    .map(path -> new File(path).getName())
-                    .toList();
+    // Timelines of tabs that are not open any more, left behind if the app did not shut down cleanly
+    private void removeStaleTimelines(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "timeline-*.log")) {
+            for (Path file : files) {
+                if (!timelines.containsKey(file.toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
         }
+    }
 
+    private void openTimeline(String timelinePath) {
+        currentFilePath = timelinePath;
+        if (!openFiles.contains(timelinePath)) {
+            openFiles.add(timelinePath);
+        }
+        bookmarkManager.setCurrentFile(timelinePath);
+        highlightManager.setCurrentFile(timelinePath);
+        filterManager.setCurrentFile(timelinePath);
+        loadCurrentFile();
+        updateTabBar();
     }
 
     /**
@@ -509,38 +961,83 @@ public class ApplicationController {
      */
     private Runnable createHighlightingCallback() {
         return () -> {
-            highlightManager.applyCombinedHighlighting(logArea);
+            TailThreadRef currentRef = fileThreadRefs.get(currentFilePath);
+            if (currentRef != null && currentRef.consumeRotation()) {
+                followRotation();
+            }
+            long skippedTo = currentRef != null ? currentRef.consumeSkip() : -1;
+            if (skippedTo >= 0) {
+                pagedViewport.skipTo(skippedTo);
+            }
+            if (currentRef != null && !pagedViewport.isDetached()) {
+                pagedViewport.extendEnd(currentRef.getCommittedPosition());
+                if (!filterManager.hasActiveFilters()) {
+                    trimScrollback();
+                }
+                updateTailStatus(currentRef);
+            }
+            if (showingFiltered) {
+                // Matches are kept within the same budget as the unfiltered view
+                trimScrollback();
+            }
+            // Lines already shown keep their styles, only what changed since the last frame is restyled
+            highlightManager.applyCombinedHighlighting(logArea, logDocument.snapshot(), logDocument.takeRestyleFrom());
             
-            // Update originalLogContent based on filter state
-            if (filterManager.hasActiveFilters()) {
-                // When filters are active, we need to update originalLogContent from the file
-                // and then re-apply filters to show the updated filtered view
-                if (currentFilePath != null && new File(currentFilePath).exists()) {
-                    try {
-                        // Read the full file content to update originalLogContent
-                        String fullContent = new String(Files.readAllBytes(Paths.get(currentFilePath)));
-                        originalLogContent = fullContent;
-                        // Re-apply filters with the updated content
-                        applyFilteringToContent();
-                        return; // applyFilteringToContent already applies highlighting
-                    } catch (IOException e) {
-                        // If file read fails, fall back to using current logArea content
-                        // This shouldn't happen in normal operation
-                        System.err.println("Failed to read file for filtering: " + e.getMessage());
-                    }
+            // Appended lines were filtered as they were drained, only a file loaded with active
+            // filters still needs its first run
+            if (filterManager.hasActiveFilters() && filterRun == null) {
+                if (!showingFiltered) {
+                    applyFilteringToContent();
+                } else {
+                    statusLabel.setText(String.format("Showing %,d of %,d lines", filterMatched, filterScanned));
                 }
-            } else {
-                // No filters active, update originalLogContent to current content
-                originalLogContent = logArea.getText();
             }
         };
     }
 
+    /**
+     * Show the file being tailed together with the latency of the last change notification
+     */
+    private void updateTailStatus(TailThreadRef threadRef) {
+        if (currentFilePath == null || pauseMode) {
+            return;
+        }
+        String status = "Tailing: " + new File(currentFilePath).getName();
+        long latency = threadRef.getLastLatencyMillis();
+        if (latency >= 0) {
+            status += "  (" + latency + " ms, " + (threadRef.isEventDriven() ? "watch" : "poll") + ")";
+        }
+        long bytesBehind = threadRef.getBytesBehind();
+        if (bytesBehind >= BEHIND_STATUS_BYTES) {
+            status += "  behind: " + threadRef.getQueuedLines() + " lines, " + formatBytes(bytesBehind);
+        }
+        if (threadRef.getSkippedBytes() > 0) {
+            status += "  skipped: ~" + threadRef.getSkippedLines() + " lines, " + formatBytes(threadRef.getSkippedBytes());
+        }
+        statusLabel.setText(status);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
     private void loadCurrentFile() {
         if (currentFilePath != null && new File(currentFilePath).exists()) {
-            // Stop all previous tailing threads for other files
+            Path path = Paths.get(currentFilePath);
+            if (GzipSpill.isGzip(path) && !GzipSpill.isInflated(path)) {
+                inflateAndLoad(path);
+                return;
+            }
+            cancelFilterRun();
+            showingFiltered = false;
+            ruleMatches = null;
+            logDocument.getAppendQueue().setFilter(null);
+            // Stop all previous tailing tasks for other files
             for (TailThreadRef threadRef : fileThreadRefs.values()) {
-                threadRef.setActive(false);
+                FileOperations.stopTailing(threadRef);
             }
             fileThreadRefs.clear();
 
@@ -551,25 +1048,53 @@ public class ApplicationController {
             TailThreadRef fileThreadRef = new TailThreadRef();
             fileThreadRefs.put(currentFilePath, fileThreadRef);
 
-            logArea.clear();
+            logDocument.clear();
+            wasTailingBeforeHistory = false;
             // Use highlighting callback to apply combined highlighting after loading
-            long fileSize = FileOperations.loadFileContent(logArea, currentFilePath, createHighlightingCallback());
-            // Initialize file position to current file size so tailing starts from here
-            fileThreadRef.setFilePosition(fileSize);
+            long loadedEnd = FileOperations.loadFileContent(pagedViewport, currentFilePath, createHighlightingCallback());
+            // Initialize file position to the end of the loaded pages so tailing starts from here
+            fileThreadRef.setFilePosition(loadedEnd);
             fileInfoLabel.setText("Log Tail");
 
             // Start tailing with the file-specific thread ref and highlighting callback
             pauseMode = false; // Ensure tailing is active
-            FileOperations.startTailing(currentFilePath, logArea, fileThreadRef, createHighlightingCallback());
+            FileOperations.startTailing(currentFilePath, logDocument, fileThreadRef, createHighlightingCallback());
             // Update button state on JavaFX thread
             Platform.runLater(() -> {
                 updateButtonStyles(); // Update button to show gray (active state)
             });
-            statusLabel.setText("Tailing: " + new File(currentFilePath).getName());
-            originalLogContent = logArea.getText();
+            if (pagedViewport.getDocument() != null && pagedViewport.getDocument().isCompressed()) {
+                statusLabel.setText("Viewing: " + new File(currentFilePath).getName() + " (gzip)");
+            } else {
+                statusLabel.setText("Tailing: " + new File(currentFilePath).getName());
+            }
         }
     }
 
+    /**
+     * Inflate a compressed log in the background and load it once its spill is complete
+     */
+    private void inflateAndLoad(Path path) {
+        String requested = currentFilePath;
+        String name = path.getFileName().toString();
+        statusLabel.setText("Inflating " + name + "...");
+        GzipSpill.inflateAsync(path, inflated -> Platform.runLater(() -> {
+            if (requested.equals(currentFilePath)) {
+                statusLabel.setText("Inflating " + name + ": " + formatBytes(inflated));
+            }
+        })).whenComplete((spill, error) -> Platform.runLater(() -> {
+            if (!requested.equals(currentFilePath)) {
+                return;
+            }
+            if (error != null) {
+                System.err.println("Failed to inflate " + path + ": " + error.getMessage());
+                statusLabel.setText("Failed to inflate " + name);
+                return;
+            }
+            loadCurrentFile();
+        }));
+    }
+
     @FXML
     protected void onTogglePause() {
         pauseMode = !pauseMode;
@@ -582,13 +1107,18 @@ public class ApplicationController {
             statusLabel.setText("Paused");
         } else {
             updateButtonState(); // Direct call since we're on JavaFX thread
+            if (currentFilePath != null && pagedViewport.isDetached()) {
+                // Viewing older pages, jump back to the live end of the file
+                loadCurrentFile();
+                return;
+            }
             if (currentFilePath != null) {
                 // Create new thread ref if needed
                 if (!fileThreadRefs.containsKey(currentFilePath)) {
                     fileThreadRefs.put(currentFilePath, new TailThreadRef());
                 }
                 // Use highlighting callback when resuming tailing
-                FileOperations.startTailing(currentFilePath, logArea, fileThreadRefs.get(currentFilePath), createHighlightingCallback());
+                FileOperations.startTailing(currentFilePath, logDocument, fileThreadRefs.get(currentFilePath), createHighlightingCallback());
                 statusLabel.setText("Tailing...");
             }
         }
@@ -596,7 +1126,7 @@ public class ApplicationController {
 
     @FXML
     protected void onClear() {
-        logArea.clear();
+        pagedViewport.clearShown();
         statusLabel.setText("Cleared");
     }
 
@@ -604,9 +1134,187 @@ public class ApplicationController {
     protected void onRefresh() {
         if (currentFilePath != null && new File(currentFilePath).exists()) {
             // Use highlighting callback when refreshing
-            FileOperations.refreshFile(logArea, currentFilePath, createHighlightingCallback());
+            long loadedEnd = FileOperations.refreshFile(pagedViewport, currentFilePath, createHighlightingCallback());
+            if (loadedEnd > 0 && fileThreadRefs.containsKey(currentFilePath)) {
+                fileThreadRefs.get(currentFilePath).setFilePosition(loadedEnd);
+            }
             statusLabel.setText("Refreshed");
-            originalLogContent = logArea.getText();
+        }
+    }
+
+    /**
+     * Ask for a line number and jump to it
+     */
+    public void showGoToLineDialog() {
+        if (pagedViewport.getDocument() == null) {
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Go to Line");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Line number:");
+        dialog.showAndWait().ifPresent(value -> {
+            try {
+                goToLine(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                statusLabel.setText("Invalid line number: " + value);
+            }
+        });
+    }
+
+    /**
+     * Jump to a 1-based line of the file, paging the file in around it when it is outside the window
+     */
+    private void goToLine(long lineNumber) {
+        if (filterManager.hasActiveFilters()) {
+            statusLabel.setText("Clear the filters to go to a line");
+            return;
+        }
+        try {
+            PagedDocument document = pagedViewport.getDocument();
+            long offset = document.findLineStart(lineNumber - 1);
+            if (offset == PagedDocument.LINE_UNKNOWN) {
+                statusLabel.setText("Indexing lines, try again in a moment");
+                return;
+            }
+            if (offset < 0) {
+                statusLabel.setText("Line " + lineNumber + " is past the end of the file");
+                return;
+            }
+            showOffset(offset);
+            statusLabel.setText("Line " + lineNumber);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            System.err.println("Failed to go to line: " + e.getMessage());
+        }
+    }
+
+    public void showGoToTimeDialog() {
+        if (pagedViewport.getDocument() == null) {
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Go to Time");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Time (HH:mm:ss or yyyy-MM-dd HH:mm:ss):");
+        dialog.showAndWait().ifPresent(value -> goToTime(value.trim()));
+    }
+
+    /**
+     * Jump to the first line stamped at or after the given time. A bare time of day is taken
+     * on the day of the last timestamp in the file, or the day before when that is still ahead.
+     */
+    private void goToTime(String value) {
+        if (filterManager.hasActiveFilters()) {
+            statusLabel.setText("Clear the filters to go to a time");
+            return;
+        }
+        try {
+            PagedDocument document = pagedViewport.getDocument();
+            long time = LogTimestamp.parse(value);
+            if (time == LogTimestamp.NONE) {
+                long timeOfDay = LogTimestamp.parseTimeOfDay(value);
+                if (timeOfDay == LogTimestamp.NONE) {
+                    statusLabel.setText("Invalid time: " + value);
+                    return;
+                }
+                long last = document.getLineIndex().getTimestamps().getLastTime();
+                if (last == LogTimestamp.NONE) {
+                    statusLabel.setText(document.getLineIndex().isReady()
+                            ? "No timestamps found in this file" : "Indexing lines, try again in a moment");
+                    return;
+                }
+                time = LogTimestamp.startOfDay(last) + timeOfDay;
+                if (time > last) {
+                    time -= 86_400_000L;
+                }
+            }
+            long offset = document.findTime(time);
+            if (offset == PagedDocument.LINE_UNKNOWN) {
+                statusLabel.setText("Indexing lines, try again in a moment");
+                return;
+            }
+            if (offset < 0) {
+                statusLabel.setText("No lines at or after " + value);
+                return;
+            }
+            showOffset(offset);
+            statusLabel.setText("Time " + value + " at line " + (document.getLineIndex().lineAt(offset) + 1));
+        } catch (IOException | IndexOutOfBoundsException e) {
+            System.err.println("Failed to go to time: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Show the line starting at {@code offset} at the top, paging the file in around it when it is outside the window
+     */
+    private void showOffset(long offset) throws IOException {
+        if (!pagedViewport.contains(offset)) {
+            if (!pagedViewport.isDetached()) {
+                pauseForHistory();
+            }
+            pagedViewport.openAt(offset);
+            reapplyHighlighting();
+            if (!pagedViewport.isDetached()) {
+                resumeAfterHistory();
+            }
+        }
+
+        int paragraph = pagedViewport.paragraphOf(offset);
+        logArea.moveTo(paragraph, 0);
+        logArea.showParagraphAtTop(paragraph);
+    }
+
+    /**
+     * The tailed file was rotated or truncated; keep what is shown and page the new file from here on.
+     */
+    private void followRotation() {
+        if (filterRun != null) {
+            // The run reads the old file, which is closed now; what it has shown stays
+            cancelFilterRun();
+            logDocument.append(heldMatches.toString());
+            heldMatches.setLength(0);
+        }
+        try {
+            pagedViewport.followRotation(PagedDocument.open(currentFilePath));
+        } catch (IOException e) {
+            System.err.println("Failed to follow rotated file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the oldest lines once the tailed output is over the scrollback budget and
+     * move bookmarks and search matches up by what was removed.
+     */
+    private void trimScrollback() {
+        try {
+            PagedViewport.Eviction eviction = showingFiltered
+                    ? pagedViewport.trimUnpagedToBudget()
+                    : pagedViewport.trimToBudget();
+            if (eviction == null) {
+                return;
+            }
+            if (!showingFiltered) {
+                // Bookmarks are lines of the file, dropping old matches from the filtered view does not move them
+                bookmarkManager.shiftLines(-eviction.lines);
+                if (rightPanelController != null) {
+                    rightPanelController.refreshBookmarks();
+                }
+            }
+
+            int removedBefore = 0;
+            List<Integer> shifted = new ArrayList<>(matchPositions.size());
+            for (int i = 0; i < matchPositions.size(); i++) {
+                int position = matchPositions.get(i) - eviction.chars;
+                if (position >= 0) {
+                    shifted.add(position);
+                } else if (i < currentMatchIndex) {
+                    removedBefore++;
+                }
+            }
+            matchPositions = shifted;
+            currentMatchIndex = Math.max(0, Math.min(currentMatchIndex - removedBefore, matchPositions.size() - 1));
+        } catch (IOException | IndexOutOfBoundsException e) {
+            System.err.println("Failed to trim scrollback: " + e.getMessage());
         }
     }
 
@@ -645,22 +1353,23 @@ public class ApplicationController {
         statusLabel.setText("Match " + (currentMatchIndex + 1) + " of " + matchPositions.size());
 
         // Resume tailing after 3 seconds
-        new Thread(() -> {
-            try {
-                Thread.sleep(3000);
-                Platform.runLater(() -> {
-                    if (wasAutoTailingBeforeSearch && currentFilePath != null && pauseMode
-                            && fileThreadRefs.containsKey(currentFilePath)) {
-                        FileOperations.startTailing(currentFilePath, logArea, fileThreadRefs.get(currentFilePath), createHighlightingCallback());
-                        pauseMode = false;
-                        updateButtonStyles();
-                        statusLabel.setText("Tailing...");
-                    }
-                });
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        scheduleResumeAfterSearch();
+    }
+
+    /**
+     * Resume tailing 3 seconds after a search paused it, using the shared tail workers
+     * instead of a dedicated sleeper thread.
+     */
+    private void scheduleResumeAfterSearch() {
+        TailScheduler.getInstance().schedule(() -> Platform.runLater(() -> {
+            if (wasAutoTailingBeforeSearch && currentFilePath != null && pauseMode
+                    && !pagedViewport.isDetached() && fileThreadRefs.containsKey(currentFilePath)) {
+                FileOperations.startTailing(currentFilePath, logDocument, fileThreadRefs.get(currentFilePath), createHighlightingCallback());
+                pauseMode = false;
+                updateButtonStyles();
+                statusLabel.setText("Tailing...");
             }
-        }).start();
+        }), 3000);
     }
 
     private void filterContent() {
@@ -677,21 +1386,19 @@ public class ApplicationController {
         }
 
         // Get current content (don't clear it)
-        String content = logArea.getText();
-        if (content.isEmpty()) {
+        LogDocument.Snapshot content = logDocument.snapshot();
+        if (content.length() == 0) {
             return;
         }
 
         // Find all occurrences (case-insensitive search)
-        String contentLower = content.toLowerCase();
-        String searchTermLower = searchTerm.toLowerCase();
+        Pattern searchPattern = Pattern.compile(Pattern.quote(searchTerm), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
         matchPositions.clear();
         currentMatchIndex = 0;
-        int startIndex = 0;
 
-        while ((startIndex = contentLower.indexOf(searchTermLower, startIndex)) != -1) {
-            matchPositions.add(startIndex);
-            startIndex += searchTerm.length();
+        Matcher matcher = searchPattern.matcher(content);
+        while (matcher.find()) {
+            matchPositions.add(matcher.start());
         }
 
         currentSearchTerm = searchTerm;
@@ -719,22 +1426,7 @@ public class ApplicationController {
             statusLabel.setText("Found " + matchPositions.size() + " match" + (matchPositions.size() == 1 ? "" : "es"));
 
             // Resume tailing after 3 seconds
-            new Thread(() -> {
-                try {
-                    Thread.sleep(3000);
-                    Platform.runLater(() -> {
-                        if (wasAutoTailingBeforeSearch && currentFilePath != null && pauseMode
-                                && fileThreadRefs.containsKey(currentFilePath)) {
-                            FileOperations.startTailing(currentFilePath, logArea, fileThreadRefs.get(currentFilePath), createHighlightingCallback());
-                            pauseMode = false;
-                            updateButtonStyles();
-                            statusLabel.setText("Tailing...");
-                        }
-                    });
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }).start();
+            scheduleResumeAfterSearch();
         } else {
             // No matches found
             clearSearchHighlights();
@@ -747,13 +1439,13 @@ public class ApplicationController {
             return;
         }
 
-        String content = logArea.getText();
+        int contentLength = logArea.getLength();
         StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
 
         // Collect all line ranges that contain matches
         Set<LineRange> lineRanges = new HashSet<>();
         for (int matchPos : matchPositions) {
-            LineRange range = getLineRange(content, matchPos);
+            LineRange range = getLineRange(matchPos);
             lineRanges.add(range);
         }
 
@@ -787,8 +1479,8 @@ public class ApplicationController {
         }
 
         // Add remaining content
-        if (lastEnd < content.length()) {
-            spansBuilder.add(Collections.emptyList(), content.length() - lastEnd);
+        if (lastEnd < contentLength) {
+            spansBuilder.add(Collections.emptyList(), contentLength - lastEnd);
         }
 
         StyleSpans<Collection<String>> spans = spansBuilder.create();
@@ -798,22 +1490,14 @@ public class ApplicationController {
     /**
      * Get the start and end positions of the line containing the given position
      */
-    private LineRange getLineRange(String content, int position) {
-        int start = position;
-        int end = position;
-
-        // Find start of line (go back to previous newline)
-        while (start > 0 && content.charAt(start - 1) != '\n') {
-            start--;
-        }
-
-        // Find end of line (go forward to next newline)
-        while (end < content.length() && content.charAt(end) != '\n') {
-            end++;
-        }
+    private LineRange getLineRange(int position) {
+        // The area already keeps its text as paragraphs, so look the line up instead of scanning for newlines
+        int paragraph = logArea.offsetToPosition(position, Bias.Forward).getMajor();
+        int start = logArea.getAbsolutePosition(paragraph, 0);
+        int end = start + logArea.getParagraphLength(paragraph);
 
         // Include the newline character in the range if it exists
-        if (end < content.length() && content.charAt(end) == '\n') {
+        if (paragraph < logArea.getParagraphs().size() - 1) {
             end++;
         }
 
@@ -847,11 +1531,11 @@ public class ApplicationController {
     }
 
     private void clearSearchHighlights() {
-        if (logArea.getText().isEmpty()) {
+        if (logDocument.isEmpty()) {
             return;
         }
         // Reapply combined highlighting (log levels + custom patterns) when search is cleared
-        highlightManager.applyCombinedHighlighting(logArea);
+        highlightManager.applyCombinedHighlighting(logArea, logDocument.snapshot());
     }
 
     /**
@@ -863,13 +1547,13 @@ public class ApplicationController {
             return;
         }
 
-        String content = logArea.getText();
+        int contentLength = logArea.getLength();
 
         // Build search spans for the entire document
         StyleSpansBuilder<Collection<String>> searchBuilder = new StyleSpansBuilder<>();
         Set<LineRange> lineRanges = new HashSet<>();
         for (int matchPos : matchPositions) {
-            LineRange range = getLineRange(content, matchPos);
+            LineRange range = getLineRange(matchPos);
             lineRanges.add(range);
         }
 
@@ -896,17 +1580,17 @@ public class ApplicationController {
             lastEnd = lineRange.end;
         }
 
-        if (lastEnd < content.length()) {
-            searchBuilder.add(Collections.emptyList(), content.length() - lastEnd);
+        if (lastEnd < contentLength) {
+            searchBuilder.add(Collections.emptyList(), contentLength - lastEnd);
         }
 
         StyleSpans<Collection<String>> searchSpans = searchBuilder.create();
 
         // Get custom highlight spans
-        StyleSpans<Collection<String>> customSpans = highlightManager.getCustomHighlightSpans(logArea);
+        StyleSpans<Collection<String>> customSpans = highlightManager.getCustomHighlightSpans(logArea, logDocument.snapshot());
 
         // Merge search and custom spans
-        StyleSpans<Collection<String>> mergedSpans = mergeStyleSpans(searchSpans, customSpans, content.length());
+        StyleSpans<Collection<String>> mergedSpans = mergeStyleSpans(searchSpans, customSpans, contentLength);
 
         logArea.setStyleSpans(0, mergedSpans);
     }
@@ -992,11 +1676,13 @@ public class ApplicationController {
     }
 
     public void stopTailing() {
-        tailThreadRef.setActive(false);
-        // Stop all tailing threads for open files
+        FileOperations.stopTailing(tailThreadRef);
+        // Stop all tailing tasks for open files
         for (TailThreadRef threadRef : fileThreadRefs.values()) {
-            threadRef.setActive(false);
+            FileOperations.stopTailing(threadRef);
         }
+        timelines.values().forEach(MergedTimeline::discard);
+        timelines.clear();
     }
 
     // Menu bar operations
@@ -1030,10 +1716,9 @@ public class ApplicationController {
         // Stop tailing for this file
         if (fileThreadRefs.containsKey(filePath)) {
             TailThreadRef threadRef = fileThreadRefs.get(filePath);
-            threadRef.setActive(false);
+            FileOperations.stopTailing(threadRef);
             fileThreadRefs.remove(filePath);
         }
-
         // Remove from cache
         fileContentCache.remove(filePath);
 
@@ -1058,11 +1743,22 @@ public class ApplicationController {
                 loadCurrentFile();
             } else {
                 currentFilePath = null;
-                logArea.clear();
+                cancelFilterRun();
+                showingFiltered = false;
+                ruleMatches = null;
+                logDocument.getAppendQueue().setFilter(null);
+                pagedViewport.close();
+                logDocument.clear();
                 fileInfoLabel.setText("Log Tail");
                 statusLabel.setText("No files open");
             }
         }
+
+        // Deleted once the view no longer pages it
+        MergedTimeline timeline = timelines.remove(filePath);
+        if (timeline != null) {
+            timeline.discard();
+        }
     }
 
     /**
@@ -1074,18 +1770,18 @@ public class ApplicationController {
     private void reapplyHighlighting() {
         System.out.println("[ApplicationController] reapplyHighlighting() called");
         
-        if (logArea.getText().isEmpty()) {
+        if (logDocument.isEmpty()) {
             System.out.println("[ApplicationController] logArea is empty, skipping");
             return;
         }
 
-        System.out.println("[ApplicationController] Text length: " + logArea.getText().length());
+        System.out.println("[ApplicationController] Text length: " + logDocument.length());
         System.out.println("[ApplicationController] Search term: '" + currentSearchTerm + "', match positions: " + matchPositions.size());
 
         if (currentSearchTerm.isEmpty() || matchPositions.isEmpty()) {
             // No search active, apply combined highlighting
             System.out.println("[ApplicationController] No active search, applying combined highlighting");
-            highlightManager.applyCombinedHighlighting(logArea);
+            highlightManager.applyCombinedHighlighting(logArea, logDocument.snapshot());
         } else {
             // Search is active, apply both combined highlighting AND search highlighting
             System.out.println("[ApplicationController] Search is active, applying search + combined highlighting");
@@ -1101,48 +1797,179 @@ public class ApplicationController {
 
 
     /**
-     * Apply filtering when filter rules change
+     * Apply filtering when filter rules change. The file is filtered in the background and
+     * its matches are shown as they arrive, the first screenful right away; a run still going
+     * for the previous rules is cancelled. Lines tailed afterwards are filtered one batch at a
+     * time as they are drained into the view, so only a change of rules filters the whole file.
+     * Every scan records the lines each rule matches, enabled or not, and keeps them up to date
+     * as lines are tailed; enabling, disabling or reordering those rules later intersects their
+     * bitmaps and only reads the matched lines back, without filtering the file again.
      */
     private void applyFilteringToContent() {
-        // Get the source content - use originalLogContent if available, otherwise use current logArea content
-        String sourceContent = originalLogContent;
-        if (sourceContent == null || sourceContent.isEmpty()) {
-            sourceContent = logArea.getText();
-            // If we're using logArea content and no filters are active, update originalLogContent
-            if (!filterManager.hasActiveFilters() && !sourceContent.isEmpty()) {
-                originalLogContent = sourceContent;
+        cancelFilterRun();
+        PagedDocument document = pagedViewport.getDocument();
+        if (document == null) {
+            return;
+        }
+
+        List<FilterRule> rules = filterManager.getRules();
+        if (filterManager.hasActiveFilters()) {
+            logDocument.getAppendQueue().setFilter(this::filterTailBatch);
+            startFilterRun(document, canRecombine(document, rules));
+        } else {
+            // The rule matches are kept current while no rule is enabled, for the next toggle
+            ruleMatchesComplete = ruleMatches != null && ruleMatchesComplete && ruleMatches.covers(rules);
+            requiredRules = new int[0];
+            logDocument.getAppendQueue().setFilter(ruleMatchesComplete ? this::filterTailBatch : null);
+            if (showingFiltered) {
+                // No filters, show the file again from its end
+                showingFiltered = false;
+                long loadedEnd = FileOperations.refreshFile(pagedViewport, currentFilePath, createHighlightingCallback());
+                if (loadedEnd > 0 && fileThreadRefs.containsKey(currentFilePath)) {
+                    fileThreadRefs.get(currentFilePath).setFilePosition(loadedEnd);
+                }
+                statusLabel.setText("Ready");
             }
         }
 
-        if (sourceContent.isEmpty()) {
-            return;
+        if (rightPanelController != null) {
+            rightPanelController.refreshFilters();
         }
+    }
 
-        if (filterManager.hasActiveFilters()) {
-            // Apply filters to source content
-            List<FilterManager.FilteredLine> filtered = filterManager.filterContent(sourceContent);
+    /**
+     * True if the matches of {@code rules} are known for the whole file and the line index can read them back
+     */
+    private boolean canRecombine(PagedDocument document, List<FilterRule> rules) {
+        if (ruleMatches == null || !ruleMatchesComplete || !ruleMatches.covers(rules)) {
+            return false;
+        }
+        LineIndex index = document.peekLineIndex();
+        return index != null && index.isReady() && index.getIndexedEnd() >= ruleMatches.getEnd();
+    }
 
-            // Build filtered display
-            StringBuilder filteredContent = new StringBuilder();
-            for (FilterManager.FilteredLine line : filtered) {
-                filteredContent.append(line.content).append("\n");
+    private void startFilterRun(PagedDocument document, boolean recombine) {
+        int generation = ++filterGeneration;
+        boolean[] first = {true};
+        heldMatches.setLength(0);
+        heldSegments.clear();
+        filterMatched = 0;
+        filterScanned = 0;
+        List<FilterRule> rules = filterManager.getRules();
+        Consumer<FilterRun.Progress> onProgress = progress -> Platform.runLater(() -> {
+            if (generation != filterGeneration) {
+                return;
+            }
+            if (first[0]) {
+                // The previous view stays until the first matches replace it
+                first[0] = false;
+                showingFiltered = true;
+                logDocument.replace(progress.text);
+                trimScrollback();
+                highlightManager.applyCombinedHighlighting(logArea, logDocument.snapshot());
+            } else if (!progress.text.isEmpty()) {
+                logDocument.append(progress.text);
+                trimScrollback();
+                highlightManager.applyCombinedHighlighting(logArea, logDocument.snapshot(), logDocument.takeRestyleFrom());
+            }
+            statusLabel.setText(String.format("Filtering: %,d matched of %,d lines...",
+                    progress.matchedLines, progress.scannedLines));
+        });
+        if (recombine) {
+            // Only the bitmaps of the enabled rules are intersected, the file is not filtered again
+            requiredRules = ruleMatches.requiredKeys(rules);
+            filterRunScans = false;
+            filterRun = FilterRun.show(document, document.peekLineIndex(), ruleMatches.combine(requiredRules),
+                    ruleMatches.getLineCount(), onProgress);
+        } else {
+            // Everything up to what the tailer delivered is filtered by the run, the rest by the tail filter
+            TailThreadRef ref = fileThreadRefs.get(currentFilePath);
+            long end = pagedViewport.isDetached() && ref != null ? ref.getCommittedPosition() : pagedViewport.getWindowEnd();
+            ruleMatches = RuleMatches.compile(rules);
+            ruleMatchesComplete = false;
+            requiredRules = ruleMatches.requiredKeys(rules);
+            filterRunScans = true;
+            filterRun = FilterRun.start(document, end, ruleMatches, requiredRules, onProgress);
+        }
+        filterRun.getCompletion().whenComplete((last, error) -> Platform.runLater(() -> {
+            if (generation != filterGeneration) {
+                return;
+            }
+            filterRun = null;
+            if (error != null) {
+                if (!(error instanceof CancellationException)) {
+                    System.err.println("Failed to filter " + currentFilePath + ": " + error.getMessage());
+                    statusLabel.setText("Filtering failed");
+                }
+                return;
+            }
+            if (filterRunScans) {
+                ruleMatchesComplete = true;
+                for (RuleMatches.Segment segment : heldSegments) {
+                    appendRuleMatches(segment);
+                }
+                heldSegments.clear();
+            }
+            if (first[0]) {
+                // Empty file, nothing was handed on
+                showingFiltered = true;
+                logDocument.clear();
             }
+            if (heldMatches.length() > 0) {
+                logDocument.append(heldMatches.toString());
+                heldMatches.setLength(0);
+                trimScrollback();
+                highlightManager.applyCombinedHighlighting(logArea, logDocument.snapshot(), logDocument.takeRestyleFrom());
+            }
+            filterMatched += last.matchedLines;
+            filterScanned += last.scannedLines;
+            statusLabel.setText(String.format("Showing %,d of %,d lines", filterMatched, filterScanned));
+        }));
+    }
 
-            logArea.clear();
-            logArea.appendText(filteredContent.toString());
-            highlightManager.applyCombinedHighlighting(logArea);
-            statusLabel.setText("Showing " + filtered.size() + " of " + sourceContent.split("\n", -1).length + " lines");
+    /**
+     * Lines of a tailed batch that match the rules; held back while a run is still showing the lines before them.
+     * Every rule is evaluated, so the rule matches keep up with the file; with no rule enabled the batch is shown as is.
+     */
+    private String filterTailBatch(TailBatch batch) {
+        if (!filterManager.hasActiveFilters() && !ruleMatchesComplete) {
+            return batch.text;
+        }
+        RuleMatches.Segment segment = ruleMatches.evaluate(batch.text, requiredRules, batch.startOffset, batch.endOffset);
+        if (filterRun != null && filterRunScans) {
+            heldSegments.add(segment);
         } else {
-            // No filters, show original content
-            logArea.clear();
-            logArea.appendText(sourceContent);
-            originalLogContent = sourceContent; // Update to ensure it's in sync
-            highlightManager.applyCombinedHighlighting(logArea);
-            statusLabel.setText("Ready");
+            appendRuleMatches(segment);
+        }
+        if (!filterManager.hasActiveFilters()) {
+            return batch.text;
+        }
+        filterScanned += segment.getLines();
+        filterMatched += segment.getShownLines();
+        if (filterRun != null) {
+            heldMatches.append(segment.getShown());
+            return "";
         }
+        return segment.getShown();
+    }
 
-        if (rightPanelController != null) {
-            rightPanelController.refreshFilters();
+    private void appendRuleMatches(RuleMatches.Segment segment) {
+        if (ruleMatchesComplete && !ruleMatches.append(segment)) {
+            // Lines were skipped or the file was replaced, the next change of rules scans it again
+            ruleMatchesComplete = false;
+        }
+    }
+
+    private void cancelFilterRun() {
+        filterGeneration++;
+        heldMatches.setLength(0);
+        heldSegments.clear();
+        if (filterRun != null) {
+            filterRun.cancel();
+            if (filterRunScans) {
+                ruleMatchesComplete = false;
+            }
+            filterRun = null;
         }
     }
 
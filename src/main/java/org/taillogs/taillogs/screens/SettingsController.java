@@ -7,9 +7,11 @@ import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Spinner;
 import javafx.scene.control.SpinnerValueFactory;
+import javafx.scene.control.TextField;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import org.taillogs.taillogs.config.AppearanceSettings;
+import org.taillogs.taillogs.config.BackpressurePolicy;
 import org.taillogs.taillogs.config.PreferencesManager;
 
 public class SettingsController {
@@ -31,6 +33,27 @@ public class SettingsController {
     @FXML
     private Label backgroundColorPreview;
 
+    @FXML
+    private Spinner<Integer> scrollbackLinesSpinner;
+
+    @FXML
+    private Spinner<Integer> scrollbackMegabytesSpinner;
+
+    @FXML
+    private Spinner<Integer> openLinesSpinner;
+
+    @FXML
+    private Spinner<Integer> openMegabytesSpinner;
+
+    @FXML
+    private ComboBox<BackpressurePolicy> backpressureCombo;
+
+    @FXML
+    private TextField folderPatternsField;
+
+    @FXML
+    private TextField followGlobField;
+
     @FXML
     private Button okBtn;
 
@@ -69,6 +92,26 @@ public class SettingsController {
             updateBackgroundColorPreview(newVal);
         });
 
+        // Initialize scrollback budget spinners
+        scrollbackLinesSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                10_000, 10_000_000, currentSettings.getScrollbackLines(), 10_000));
+        scrollbackMegabytesSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                8, 2048, currentSettings.getScrollbackMegabytes(), 8));
+
+        // Initialize open-at-end budget spinners
+        openLinesSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                100, 1_000_000, currentSettings.getOpenLines(), 1_000));
+        openMegabytesSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                1, 256, currentSettings.getOpenMegabytes(), 1));
+
+        // Initialize backpressure policy combo
+        backpressureCombo.getItems().addAll(BackpressurePolicy.values());
+        backpressureCombo.setValue(currentSettings.getBackpressure());
+
+        // Initialize folder file patterns
+        folderPatternsField.setText(currentSettings.getFolderFilePatterns());
+        followGlobField.setText(currentSettings.getFollowGlob());
+
         // Update previews with current values
         updateFontSizePreview(currentSettings.getFontSize());
         updateFontWeightPreview(currentSettings.getFontWeight());
@@ -127,11 +170,23 @@ public class SettingsController {
             (int)(color.getGreen() * 255),
             (int)(color.getBlue() * 255));
 
-        return new AppearanceSettings(
+        AppearanceSettings settings = new AppearanceSettings(
                 fontSizeSpinner.getValue(),
                 fontWeightCombo.getValue(),
                 hexColor
         );
+        settings.setScrollbackLines(scrollbackLinesSpinner.getValue());
+        settings.setScrollbackMegabytes(scrollbackMegabytesSpinner.getValue());
+        settings.setOpenLines(openLinesSpinner.getValue());
+        settings.setOpenMegabytes(openMegabytesSpinner.getValue());
+        settings.setBackpressure(backpressureCombo.getValue());
+        String patterns = folderPatternsField.getText();
+        settings.setFolderFilePatterns(patterns == null || patterns.isBlank()
+                ? AppearanceSettings.DEFAULT_FOLDER_FILE_PATTERNS : patterns.trim());
+        String followGlob = followGlobField.getText();
+        settings.setFollowGlob(followGlob == null || followGlob.isBlank()
+                ? AppearanceSettings.DEFAULT_FOLLOW_GLOB : followGlob.trim());
+        return settings;
     }
 
     public boolean isOkPressed() {
@@ -1,5 +1,6 @@
 package org.taillogs.taillogs.ui;
 
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
@@ -27,6 +28,11 @@ public class MenuBarCreator {
         void onClearDisplay();
         void onRefreshFile();
         void onTogglePause();
+        void onGoToLine();
+        void onGoToTime();
+        /** Turn following the newest file of the current folder on or off, returns whether it is on */
+        boolean onFollowFolder(boolean enable);
+        void onMergeTimeline();
         void onAbout();
         void onShortcuts();
         void onSetTheme(String theme);
@@ -81,11 +87,26 @@ public class MenuBarCreator {
         MenuItem pauseItem = new MenuItem("⏸ Pause/Resume");
         pauseItem.setOnAction(e -> callbacks.onTogglePause());
 
+        MenuItem goToLineItem = new MenuItem("🔢 Go to Line");
+        goToLineItem.setOnAction(e -> callbacks.onGoToLine());
+        goToLineItem.setAccelerator(new KeyCodeCombination(KeyCode.G, KeyCombination.SHORTCUT_DOWN));
+
+        MenuItem goToTimeItem = new MenuItem("🕒 Go to Time");
+        goToTimeItem.setOnAction(e -> callbacks.onGoToTime());
+        goToTimeItem.setAccelerator(new KeyCodeCombination(KeyCode.T, KeyCombination.SHORTCUT_DOWN));
+
+        CheckMenuItem followFolderItem = new CheckMenuItem("📡 Follow Newest in Folder");
+        followFolderItem.setOnAction(e -> followFolderItem.setSelected(
+                callbacks.onFollowFolder(followFolderItem.isSelected())));
+
+        MenuItem mergeTimelineItem = new MenuItem("🔀 Merge Open Files by Time");
+        mergeTimelineItem.setOnAction(e -> callbacks.onMergeTimeline());
+
         MenuItem findReplaceItem = new MenuItem("Find & Replace");
         findReplaceItem.setOnAction(e -> showInfo("Find & Replace", "Feature coming soon"));
         findReplaceItem.setDisable(true);
 
-        toolsMenu.getItems().addAll(clearItem, refreshItem, pauseItem,
+        toolsMenu.getItems().addAll(clearItem, refreshItem, pauseItem, goToLineItem, goToTimeItem, followFolderItem, mergeTimelineItem,
                 new javafx.scene.control.SeparatorMenuItem(), findReplaceItem);
 
         // Appearance Menu
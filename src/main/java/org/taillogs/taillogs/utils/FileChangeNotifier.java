@@ -0,0 +1,208 @@
+package org.taillogs.taillogs.utils;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Single {@link WatchService} shared by every tailed file. One daemon thread waits for
+ * directory events and calls the listeners registered for the file that changed, and the
+ * directory listeners registered for the folder it is in.
+ * When the platform has no native watch support {@link #isEventDriven()} is false and
+ * callers rely on polling alone.
+ */
+public class FileChangeNotifier {
+    private final WatchService watchService;
+    private final Map<Path, WatchKey> directoryKeys = new ConcurrentHashMap<>();
+    private final Map<Path, List<Runnable>> listeners = new ConcurrentHashMap<>();
+    private final Map<Path, List<BiConsumer<WatchEvent.Kind<?>, Path>>> directoryListeners = new ConcurrentHashMap<>();
+    private Thread watcherThread;
+
+    public FileChangeNotifier() {
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            service = null;
+        }
+        this.watchService = service;
+    }
+
+    public boolean isEventDriven() {
+        return watchService != null;
+    }
+
+    public synchronized void register(Path file, Runnable listener) {
+        if (watchService == null) {
+            return;
+        }
+        Path absolute = file.toAbsolutePath();
+        Path directory = absolute.getParent();
+        if (directory == null) {
+            return;
+        }
+        if (watchDirectory(directory)) {
+            listeners.computeIfAbsent(absolute, p -> new CopyOnWriteArrayList<>()).add(listener);
+        }
+    }
+
+    /**
+     * Call {@code listener} with the kind and path of every entry created, modified or deleted
+     * in {@code directory}. After an event overflow the path is null and the listener has to
+     * list the directory itself.
+     */
+    public synchronized void registerDirectory(Path directory, BiConsumer<WatchEvent.Kind<?>, Path> listener) {
+        if (watchService == null) {
+            return;
+        }
+        Path absolute = directory.toAbsolutePath();
+        if (watchDirectory(absolute)) {
+            directoryListeners.computeIfAbsent(absolute, p -> new CopyOnWriteArrayList<>()).add(listener);
+        }
+    }
+
+    public synchronized void unregisterDirectory(Path directory, BiConsumer<WatchEvent.Kind<?>, Path> listener) {
+        Path absolute = directory.toAbsolutePath();
+        List<BiConsumer<WatchEvent.Kind<?>, Path>> folderListeners = directoryListeners.get(absolute);
+        if (folderListeners != null) {
+            folderListeners.remove(listener);
+            if (folderListeners.isEmpty()) {
+                directoryListeners.remove(absolute);
+            }
+        }
+        releaseDirectory(absolute);
+    }
+
+    private boolean watchDirectory(Path directory) {
+        try {
+            if (!directoryKeys.containsKey(directory)) {
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                directoryKeys.put(directory, key);
+            }
+            ensureStarted();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to watch " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Stop watching the directory once no file in it and no directory listener needs it
+    private void releaseDirectory(Path directory) {
+        boolean directoryInUse = directoryListeners.containsKey(directory)
+                || listeners.keySet().stream().anyMatch(p -> directory.equals(p.getParent()));
+        if (!directoryInUse) {
+            WatchKey key = directoryKeys.remove(directory);
+            if (key != null) {
+                key.cancel();
+            }
+        }
+    }
+
+    public synchronized void unregister(Path file, Runnable listener) {
+        Path absolute = file.toAbsolutePath();
+        List<Runnable> fileListeners = listeners.get(absolute);
+        if (fileListeners != null) {
+            fileListeners.remove(listener);
+            if (fileListeners.isEmpty()) {
+                listeners.remove(absolute);
+            }
+        }
+
+        Path directory = absolute.getParent();
+        if (directory != null) {
+            releaseDirectory(directory);
+        }
+    }
+
+    private void ensureStarted() {
+        if (watcherThread != null) {
+            return;
+        }
+        watcherThread = new Thread(this::watchLoop, "TailWatcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        notifyDirectory(directory);
+                        notifyDirectoryListeners(directory, event.kind(), null);
+                    } else if (event.context() instanceof Path) {
+                        Path file = directory.resolve((Path) event.context());
+                        notifyFile(file);
+                        notifyDirectoryListeners(directory, event.kind(), file);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void notifyFile(Path file) {
+        List<Runnable> fileListeners = listeners.get(file);
+        if (fileListeners != null) {
+            fileListeners.forEach(listener -> run(listener, file));
+        }
+    }
+
+    private void notifyDirectory(Path directory) {
+        listeners.forEach((file, fileListeners) -> {
+            if (directory.equals(file.getParent())) {
+                fileListeners.forEach(listener -> run(listener, file));
+            }
+        });
+    }
+
+    private void notifyDirectoryListeners(Path directory, WatchEvent.Kind<?> kind, Path file) {
+        List<BiConsumer<WatchEvent.Kind<?>, Path>> folderListeners = directoryListeners.get(directory);
+        if (folderListeners != null) {
+            for (BiConsumer<WatchEvent.Kind<?>, Path> listener : folderListeners) {
+                try {
+                    listener.accept(kind, file);
+                } catch (RuntimeException e) {
+                    System.err.println("Folder listener failed for " + directory + ": " + e);
+                }
+            }
+        }
+    }
+
+    // A failing listener must not stop the watcher thread every other tail depends on
+    private static void run(Runnable listener, Path file) {
+        try {
+            listener.run();
+        } catch (RuntimeException e) {
+            System.err.println("File listener failed for " + file + ": " + e);
+        }
+    }
+
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+    }
+}
@@ -6,27 +6,60 @@ import org.fxmisc.richtext.CodeArea;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.io.ByteArrayOutputStream;
-import java.io.RandomAccessFile;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 public class FileOperations {
     private static final int TEXT_SNIFF_BYTES = 8192;
-
+    private static final int MAX_BYTES_PER_POLL = 1024 * 1024;
+    private static final int MAX_SNIFF_CACHE_ENTRIES = 10_000;
+    private static final Map<Path, SniffResult> SNIFF_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Decide from the content type and the first bytes whether a file is text. Results are
+     * cached per path and reused as long as the size and modification time are unchanged.
+     */
     public static boolean isLikelyTextFile(String filePath) {
         try {
             Path path = Paths.get(filePath);
-            if (!Files.exists(path) || !Files.isRegularFile(path)) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
                 return false;
             }
 
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            SniffResult cached = SNIFF_CACHE.get(path);
+            if (cached != null && cached.size == size && cached.modified == modified) {
+                return cached.text;
+            }
+            boolean text = sniffText(path);
+            if (SNIFF_CACHE.size() >= MAX_SNIFF_CACHE_ENTRIES) {
+                SNIFF_CACHE.clear();
+            }
+            SNIFF_CACHE.put(path, new SniffResult(size, modified, text));
+            return text;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean sniffText(Path path) {
+        try {
+            if (GzipSpill.isGzip(path)) {
+                // Rotated logs are often compressed; judge them by what they inflate to
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+                    byte[] sample = in.readNBytes(TEXT_SNIFF_BYTES);
+                    return looksLikeText(sample, sample.length);
+                }
+            }
             String contentType = Files.probeContentType(path);
             if (contentType != null) {
                 String normalized = contentType.toLowerCase();
@@ -49,33 +82,37 @@ public class FileOperations {
                 sampleSize = in.read(sample);
             }
 
-            if (sampleSize <= 0) {
-                return true;
-            }
-
-            int suspicious = 0;
-            for (int i = 0; i < sampleSize; i++) {
-                int value = sample[i] & 0xFF;
-                if (value == 0) {
-                    return false;
-                }
-                boolean isAllowedControl = value == '\n' || value == '\r' || value == '\t' || value == '\f';
-                if (value < 0x20 && !isAllowedControl) {
-                    suspicious++;
-                }
-            }
-
-            return (suspicious * 100) / sampleSize < 2;
+            return looksLikeText(sample, sampleSize);
         } catch (Exception e) {
             return false;
         }
     }
 
-    public static long loadFileContent(CodeArea textArea, String filePath) {
-        return loadFileContent(textArea, filePath, null);
+    private static boolean looksLikeText(byte[] sample, int sampleSize) {
+        if (sampleSize <= 0) {
+            return true;
+        }
+
+        int suspicious = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            int value = sample[i] & 0xFF;
+            if (value == 0) {
+                return false;
+            }
+            boolean isAllowedControl = value == '\n' || value == '\r' || value == '\t' || value == '\f';
+            if (value < 0x20 && !isAllowedControl) {
+                suspicious++;
+            }
+        }
+
+        return (suspicious * 100) / sampleSize < 2;
     }
 
-    public static long loadFileContent(CodeArea textArea, String filePath, Runnable highlightCallback) {
+    /**
+     * Open the file as a memory-mapped {@link PagedDocument} and show its last pages.
+     * Returns the byte offset up to which content was loaded, which is where tailing resumes.
+     */
+    public static long loadFileContent(PagedViewport viewport, String filePath, Runnable highlightCallback) {
         try {
             File file = new File(filePath);
             if (!file.exists()) {
@@ -83,206 +120,167 @@ public class FileOperations {
                 return 0;
             }
 
-            StringBuilder content = new StringBuilder();
-            try (InputStreamReader reader = new InputStreamReader(
-                    new FileInputStream(file), StandardCharsets.UTF_8)) {
-                char[] buffer = new char[8192];
-                int charsRead;
-                while ((charsRead = reader.read(buffer)) != -1) {
-                    content.append(buffer, 0, charsRead);
-                }
+            PagedDocument document = PagedDocument.open(filePath);
+            viewport.open(document);
+            CodeArea textArea = viewport.getArea();
+            // Apply highlighting
+            if (highlightCallback != null) {
+                highlightCallback.run();
+            } else {
+                SyntaxHighlighter.applyLogLevelHighlighting(textArea, viewport.getStore().snapshot());
             }
+            // Scroll to end
+            textArea.moveTo(textArea.getLength());
+            textArea.requestFollowCaret();
 
-            Platform.runLater(() -> {
-                textArea.clear();
-                textArea.appendText(content.toString());
-                // Apply highlighting
-                if (highlightCallback != null) {
-                    highlightCallback.run();
-                } else {
-                    SyntaxHighlighter.applyLogLevelHighlighting(textArea);
-                }
-                // Scroll to end
-                textArea.moveTo(textArea.getLength());
-                textArea.requestFollowCaret();
-            });
-
-            return file.length();
+            return viewport.getWindowEnd();
         } catch (Exception e) {
             showError("Error", "Failed to read file: " + e.getMessage());
             return 0;
         }
     }
 
-    public static void startTailing(String filePath, CodeArea textArea, TailThreadRef threadRef) {
-        startTailing(filePath, textArea, threadRef, null);
+    public static void startTailing(String filePath, LogDocument store, TailThreadRef threadRef) {
+        startTailing(filePath, store, threadRef, null);
     }
 
-    public static void startTailing(String filePath, CodeArea textArea, TailThreadRef threadRef, Runnable highlightCallback) {
+    public static void startTailing(String filePath, LogDocument store, TailThreadRef threadRef, Runnable highlightCallback) {
+        TailScheduler scheduler = TailScheduler.getInstance();
         synchronized (threadRef) {
             threadRef.setActive(true);
-            Thread existing = threadRef.getTailThread();
-            if (existing != null && existing.isAlive()) {
+            threadRef.setEventDriven(scheduler.isEventDriven());
+            if (scheduler.isRegistered(threadRef)) {
+                scheduler.resume(threadRef);
                 return;
             }
 
-            Thread tailThread = new Thread(() -> tailFile(filePath, textArea, threadRef, highlightCallback), "TailThread");
-            tailThread.setDaemon(true);
-            threadRef.setTailThread(tailThread);
-            tailThread.start();
-        }
-    }
-
-    private static void tailFile(String filePath, CodeArea textArea, TailThreadRef threadRef, Runnable highlightCallback) {
-        try {
             File file = new File(filePath);
+            if (GzipSpill.isGzip(file.toPath())) {
+                // A compressed log is finished rotated history, there is nothing to follow
+                threadRef.setActive(false);
+                return;
+            }
             // Initialize filePosition if this is the first time tailing
             if (threadRef.getFilePosition() == 0) {
                 threadRef.setFilePosition(file.length());
             }
-            long lastKnownModified = file.lastModified();
-
-            while (threadRef.isActive()) {
-                try {
-                    long currentSize = file.length();
-                    long filePosition = threadRef.getFilePosition();
-                    long currentModified = file.lastModified();
-
-                    // Handle truncate/replace cases where the file shrinks or is rewritten in-place.
-                    if (currentSize < filePosition || (currentModified > lastKnownModified && currentSize == filePosition)) {
-                        filePosition = 0;
-                        threadRef.setFilePosition(0);
-                    }
-
-                    if (currentSize > filePosition) {
-                        try (RandomAccessFile reader = new RandomAccessFile(file, "r");
-                             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                            reader.seek(filePosition);
-                            byte[] buffer = new byte[8192];
-                            int bytesRead;
-                            while ((bytesRead = reader.read(buffer)) != -1) {
-                                out.write(buffer, 0, bytesRead);
-                            }
-
-                            StringBuilder newContent = new StringBuilder();
-                            String decoded = out.toString(StandardCharsets.UTF_8);
-                            if (!decoded.isEmpty()) {
-                                newContent.append(decoded);
-                            }
-
-                            if (newContent.length() > 0) {
-                                String content = newContent.toString();
-                                Platform.runLater(() -> {
-                                    textArea.appendText(content);
-                                    // Apply highlighting
-                                    if (highlightCallback != null) {
-                                        highlightCallback.run();
-                                    } else {
-                                        SyntaxHighlighter.applyLogLevelHighlighting(textArea);
-                                    }
-                                    // Scroll to end
-                                    textArea.moveTo(textArea.getLength());
-                                    textArea.requestFollowCaret();
-                                });
-                                threadRef.setFilePosition(currentSize);
-                            }
-                        }
-                    }
-                    lastKnownModified = currentModified;
-                } catch (Exception e) {
-                    // Ignore temporary read errors
-                }
-
-                Thread.sleep(200);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } finally {
-            threadRef.setTailThread(null);
+            threadRef.setLastModified(file.lastModified());
+            threadRef.setReader(new TailReader(file.toPath()));
+            TailAppendQueue appendQueue = store.getAppendQueue();
+            threadRef.setSink(batch -> appendQueue.offer(threadRef, batch, highlightCallback));
+            scheduler.start(threadRef, file.toPath(), () -> tailOnce(file, store, threadRef, highlightCallback));
         }
     }
 
-    public static void refreshFile(CodeArea textArea, String filePath) {
-        refreshFile(textArea, filePath, null);
+    /**
+     * Stop tailing for good and release everything held for the file.
+     */
+    public static void stopTailing(TailThreadRef threadRef) {
+        threadRef.setActive(false);
+        TailScheduler.getInstance().close(threadRef);
+        TailReader reader = threadRef.getReader();
+        if (reader != null) {
+            reader.close();
+            threadRef.setReader(null);
+        }
     }
 
-    public static void refreshFile(CodeArea textArea, String filePath, Runnable highlightCallback) {
-        try {
-            File file = new File(filePath);
-            if (!file.exists()) {
-                showError("Error", "File not found: " + filePath);
-                return;
-            }
+    /**
+     * One turn of the tailer: read at most {@link #MAX_BYTES_PER_POLL} new bytes and append
+     * the complete lines among them as a single batch.
+     * Follows the path like {@code tail -F}: when the file is renamed away and recreated the
+     * rest of the old file is drained first, and when it is truncated in place (copytruncate)
+     * reading restarts from the top of the new content.
+     */
+    private static TailScheduler.PollResult tailOnce(File file, LogDocument store, TailThreadRef threadRef,
+                                                     Runnable highlightCallback) throws Exception {
+        TailReader reader = threadRef.getReader();
+        if (!threadRef.isActive() || reader == null) {
+            return TailScheduler.PollResult.IDLE;
+        }
 
-            StringBuilder content = new StringBuilder();
-            try (InputStreamReader reader = new InputStreamReader(
-                    new FileInputStream(file), StandardCharsets.UTF_8)) {
-                char[] buffer = new char[8192];
-                int charsRead;
-                while ((charsRead = reader.read(buffer)) != -1) {
-                    content.append(buffer, 0, charsRead);
-                }
-            }
+        // Batches are drained into the view once per frame, however many reads happen in between
+        TailAppendQueue appendQueue = store.getAppendQueue();
+        Consumer<TailBatch> sink = threadRef.getSink();
+
+        long filePosition = threadRef.getFilePosition();
+        long currentSize = reader.size();
+
+        // The open channel is drained before a rename is looked for, so the file key is only
+        // read once the file stopped growing and a busy file costs no attribute lookups
+        if (currentSize <= filePosition && reader.isReplaced()) {
+            // Rotated by rename and everything written to the old file before the switch is read
+            reader.flushPending(sink);
+            reader.reopen();
+            restartFromTop(appendQueue, threadRef, highlightCallback);
+            return TailScheduler.PollResult.BACKLOG;
+        }
 
-            Platform.runLater(() -> {
-                textArea.clear();
-                textArea.appendText(content.toString());
-                // Apply highlighting
-                if (highlightCallback != null) {
-                    highlightCallback.run();
-                } else {
-                    SyntaxHighlighter.applyLogLevelHighlighting(textArea);
-                }
-                // Scroll to end
-                textArea.moveTo(textArea.getLength());
-                textArea.requestFollowCaret();
-            });
-        } catch (Exception e) {
-            showError("Error", "Failed to refresh file: " + e.getMessage());
+        if (currentSize < filePosition || !reader.isContinuous(filePosition)) {
+            // Truncated in place, possibly already rewritten past the old position
+            reader.resetDecoder();
+            restartFromTop(appendQueue, threadRef, highlightCallback);
+            filePosition = 0;
         }
-    }
 
-    public static List<String> getLogFiles(String folderPath) {
-        try {
-            Path path = Paths.get(folderPath);
-            if (!Files.exists(path) || !Files.isDirectory(path)) {
-                return Collections.emptyList();
-            }
+        long currentModified = file.lastModified();
+        threadRef.setLastModified(currentModified);
+        threadRef.setLastSize(currentSize);
+        if (currentSize <= filePosition) {
+            return TailScheduler.PollResult.IDLE;
+        }
 
-            return Files.walk(path, 1)
-                    .filter(Files::isRegularFile)
-                    .map(Path::getFileName)
-                    .map(Path::toString)
-                    .filter(name -> name.toLowerCase().endsWith(".log") ||
-                                    name.toLowerCase().endsWith(".txt"))
-                    .sorted()
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            showError("Error", "Failed to read folder: " + e.getMessage());
-            return Collections.emptyList();
+        if (appendQueue.isFull()) {
+            // The view is behind by a full queue
+            switch (appendQueue.getPolicy()) {
+                case BLOCK:
+                    // Leave the rest in the file until the queue drains and wakes the task
+                    if (appendQueue.awaitNotFull(threadRef)) {
+                        return TailScheduler.PollResult.BLOCKED;
+                    }
+                    break;
+                case SKIP_TO_LIVE:
+                    long liveStart = reader.lineStartBefore(currentSize);
+                    // The skipped bytes are never read, so their lines are estimated
+                    threadRef.addSkipped(threadRef.estimateLines(liveStart - filePosition), liveStart - filePosition);
+                    reader.resetDecoder();
+                    threadRef.advanceReadPosition(liveStart);
+                    appendQueue.skipTo(threadRef, liveStart, highlightCallback);
+                    filePosition = liveStart;
+                    if (currentSize <= filePosition) {
+                        return TailScheduler.PollResult.READ;
+                    }
+                    break;
+                default:
+                    // COALESCE drops the oldest queued lines as new ones are offered
+                    break;
+            }
         }
+
+        threadRef.setLastLatencyMillis(Math.max(0, System.currentTimeMillis() - currentModified));
+        long readEnd = Math.min(currentSize, filePosition + MAX_BYTES_PER_POLL);
+        long bytesRead = reader.readLines(filePosition, readEnd, sink);
+        threadRef.advanceReadPosition(filePosition + bytesRead);
+        return readEnd < currentSize ? TailScheduler.PollResult.BACKLOG : TailScheduler.PollResult.READ;
     }
 
-    public static List<String> getLogFilesFullPath(String folderPath) {
-        try {
-            Path path = Paths.get(folderPath);
-            if (!Files.exists(path) || !Files.isDirectory(path)) {
-                return Collections.emptyList();
-            }
+    /**
+     * Continue from the start of a new file behind the same path. The switch is queued behind the
+     * batches already posted for the old file so the UI sees them in order.
+     */
+    private static void restartFromTop(TailAppendQueue appendQueue, TailThreadRef threadRef,
+                                       Runnable highlightCallback) {
+        threadRef.advanceReadPosition(0);
+        appendQueue.offerRotation(threadRef, highlightCallback);
+    }
 
-            return Files.walk(path, 1)
-                    .filter(Files::isRegularFile)
-                    .filter(p -> {
-                        String name = p.getFileName().toString().toLowerCase();
-                        return name.endsWith(".log") || name.endsWith(".txt");
-                    })
-                    .map(Path::toString)
-                    .sorted()
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            showError("Error", "Failed to read folder: " + e.getMessage());
-            return Collections.emptyList();
+    public static long refreshFile(PagedViewport viewport, String filePath, Runnable highlightCallback) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            showError("Error", "File not found: " + filePath);
+            return 0;
         }
+        return loadFileContent(viewport, filePath, highlightCallback);
     }
 
     private static void showError(String title, String message) {
@@ -295,19 +293,57 @@ public class FileOperations {
         });
     }
 
+    private static class SniffResult {
+        final long size;
+        final long modified;
+        final boolean text;
+
+        SniffResult(long size, long modified, boolean text) {
+            this.size = size;
+            this.modified = modified;
+            this.text = text;
+        }
+    }
+
     public static class TailThreadRef {
         private boolean active = false;
         private long filePosition = 0;
-        private Thread tailThread;
+        private long committedPosition = 0;
+        private long lastModified = 0;
+        private boolean eventDriven = false;
+        private long lastLatencyMillis = -1;
+        private TailReader reader;
+        private boolean rotated = false;
+        private long skippedTo = -1;
+        private long lastSize = 0;
+        private long queuedLines = 0;
+        private long skippedLines = 0;
+        private long skippedBytes = 0;
+        private long readLines = 0;
+        private long readBytes = 0;
+        private Consumer<TailBatch> sink;
 
         public synchronized boolean isActive() {
             return active;
         }
 
-        public synchronized void setActive(boolean active) {
-            this.active = active;
-            if (!active && tailThread != null) {
-                tailThread.interrupt();
+        /**
+         * Where the reader hands its batches, created once per tailing session rather than per poll
+         */
+        public synchronized Consumer<TailBatch> getSink() {
+            return sink;
+        }
+
+        public synchronized void setSink(Consumer<TailBatch> sink) {
+            this.sink = sink;
+        }
+
+        public void setActive(boolean active) {
+            synchronized (this) {
+                this.active = active;
+            }
+            if (!active) {
+                TailScheduler.getInstance().pause(this);
             }
         }
 
@@ -317,14 +353,149 @@ public class FileOperations {
 
         public synchronized void setFilePosition(long position) {
             this.filePosition = position;
+            this.committedPosition = position;
+        }
+
+        /**
+         * Move the read position forward without touching the committed position
+         */
+        public synchronized void advanceReadPosition(long position) {
+            this.filePosition = position;
+        }
+
+        /**
+         * End offset of the last batch shown, which trails the read position by the held back partial line
+         */
+        public synchronized long getCommittedPosition() {
+            return committedPosition;
+        }
+
+        public synchronized void setCommittedPosition(long committedPosition) {
+            this.committedPosition = committedPosition;
+        }
+
+        public synchronized long getLastModified() {
+            return lastModified;
+        }
+
+        public synchronized void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Record that the tailed path now refers to a new file that is read from its start
+         */
+        public synchronized void markRotated() {
+            this.rotated = true;
+        }
+
+        /**
+         * Returns true once after each rotation
+         */
+        public synchronized boolean consumeRotation() {
+            boolean wasRotated = rotated;
+            rotated = false;
+            return wasRotated;
+        }
+
+        /**
+         * Record that the lines before {@code offset} were dropped and the view continues there
+         */
+        public synchronized void markSkipped(long offset) {
+            this.skippedTo = offset;
+        }
+
+        /**
+         * Offset the view skipped to since the last call, -1 if nothing was skipped
+         */
+        public synchronized long consumeSkip() {
+            long offset = skippedTo;
+            skippedTo = -1;
+            return offset;
+        }
+
+        /**
+         * Size of the file at the last turn of the tailer
+         */
+        public synchronized long getLastSize() {
+            return lastSize;
+        }
+
+        public synchronized void setLastSize(long lastSize) {
+            this.lastSize = lastSize;
+        }
+
+        /**
+         * Bytes of the file not shown yet, whether still unread or waiting in the append queue
+         */
+        public synchronized long getBytesBehind() {
+            return Math.max(0, lastSize - committedPosition);
+        }
+
+        /**
+         * Lines read but still waiting in the append queue
+         */
+        public synchronized long getQueuedLines() {
+            return queuedLines;
+        }
+
+        synchronized void addQueued(long lines) {
+            queuedLines += lines;
+        }
+
+        public synchronized long getSkippedLines() {
+            return skippedLines;
+        }
+
+        public synchronized long getSkippedBytes() {
+            return skippedBytes;
+        }
+
+        synchronized void addSkipped(long lines, long bytes) {
+            skippedLines += lines;
+            skippedBytes += bytes;
+        }
+
+        synchronized void addRead(long lines, long bytes) {
+            readLines += lines;
+            readBytes += bytes;
+        }
+
+        /**
+         * Lines in {@code bytes} of the file, at the average line length read so far
+         */
+        synchronized long estimateLines(long bytes) {
+            if (readBytes == 0) {
+                return 0;
+            }
+            return Math.round(bytes * ((double) readLines / readBytes));
+        }
+
+        public synchronized TailReader getReader() {
+            return reader;
+        }
+
+        public synchronized void setReader(TailReader reader) {
+            this.reader = reader;
+        }
+
+        public synchronized boolean isEventDriven() {
+            return eventDriven;
+        }
+
+        public synchronized void setEventDriven(boolean eventDriven) {
+            this.eventDriven = eventDriven;
         }
 
-        public synchronized Thread getTailThread() {
-            return tailThread;
+        /**
+         * Time between the last write to the file and the tailer picking it up, -1 if unknown
+         */
+        public synchronized long getLastLatencyMillis() {
+            return lastLatencyMillis;
         }
 
-        public synchronized void setTailThread(Thread tailThread) {
-            this.tailThread = tailThread;
+        public synchronized void setLastLatencyMillis(long lastLatencyMillis) {
+            this.lastLatencyMillis = lastLatencyMillis;
         }
     }
-}
+}
\ No newline at end of file
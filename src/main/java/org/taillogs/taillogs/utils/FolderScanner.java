@@ -0,0 +1,145 @@
+package org.taillogs.taillogs.utils;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Lists the log files of a folder off the UI thread. One background thread reads the
+ * directory and matches names against the configured patterns, and the matches are checked
+ * for text content in batches on the common fork-join pool. Each batch is handed to the UI
+ * as soon as it is checked, so a folder with thousands of rotated logs fills in progressively.
+ */
+public class FolderScanner {
+    public static final String DEFAULT_PATTERNS = "*.log, *.txt";
+    private static final int BATCH_SIZE = 256;
+
+    private static final ExecutorService LISTER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FolderScanner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    private FolderScanner() {
+    }
+
+    /**
+     * Start scanning {@code folderPath}. {@code onFound} receives the full paths of each checked
+     * batch and {@code onDone} runs once every batch was delivered, both on the FX thread and
+     * only while the scan is not cancelled.
+     */
+    public static FolderScanner scan(String folderPath, String patterns, Consumer<List<String>> onFound,
+                                     Runnable onDone) {
+        FolderScanner scanner = new FolderScanner();
+        List<PathMatcher> matchers = compilePatterns(patterns);
+        LISTER.execute(() -> scanner.run(Paths.get(folderPath), matchers, onFound, onDone));
+        return scanner;
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Comma separated file name globs, for example {@code *.log, *.txt, *.log.[0-9]*}.
+     * Matching ignores case, so {@code *.log} also finds {@code APP.LOG}.
+     */
+    public static List<PathMatcher> compilePatterns(String patterns) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        String source = patterns == null || patterns.isBlank() ? DEFAULT_PATTERNS : patterns;
+        for (String pattern : source.split(",")) {
+            String trimmed = pattern.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + trimmed.toLowerCase()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid file pattern: " + trimmed + " - " + e.getMessage());
+            }
+        }
+        return matchers;
+    }
+
+    public static boolean matches(List<PathMatcher> matchers, Path file) {
+        Path name = file.getFileSystem().getPath(file.getFileName().toString().toLowerCase());
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run(Path folder, List<PathMatcher> matchers, Consumer<List<String>> onFound, Runnable onDone) {
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+            List<Path> batch = new ArrayList<>(BATCH_SIZE);
+            for (Path entry : entries) {
+                if (isCancelled()) {
+                    return;
+                }
+                if (!matches(matchers, entry)) {
+                    continue;
+                }
+                batch.add(entry);
+                if (batch.size() == BATCH_SIZE) {
+                    checks.add(check(batch, onFound));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                checks.add(check(batch, onFound));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read folder: " + e.getMessage());
+        }
+        CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0]))
+                .thenRun(() -> Platform.runLater(() -> {
+                    if (!isCancelled()) {
+                        onDone.run();
+                    }
+                }));
+    }
+
+    private CompletableFuture<Void> check(List<Path> batch, Consumer<List<String>> onFound) {
+        return CompletableFuture.runAsync(() -> {
+            List<String> found = new ArrayList<>(batch.size());
+            for (Path file : batch) {
+                if (isCancelled()) {
+                    return;
+                }
+                // Non regular files are rejected by the sniffer
+                if (FileOperations.isLikelyTextFile(file.toString())) {
+                    found.add(file.toString());
+                }
+            }
+            if (!found.isEmpty()) {
+                Platform.runLater(() -> {
+                    if (!isCancelled()) {
+                        onFound.accept(found);
+                    }
+                });
+            }
+        });
+    }
+}
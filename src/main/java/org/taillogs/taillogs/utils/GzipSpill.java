@@ -0,0 +1,297 @@
+package org.taillogs.taillogs.utils;
+
+import org.taillogs.taillogs.config.PreferencesManager;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Gzip compressed logs, inflated once by streaming through {@link GZIPInputStream} into a
+ * spill file under {@code ~/.tail_logs/spill} that is then paged like a plain file.
+ * While inflating, a checkpoint is recorded every {@link #CHECKPOINT_INTERVAL} inflated bytes
+ * with the inflated offset and the number of lines before it. The checkpoints are written next
+ * to the spill and mark it complete, so reopening, jumping and searching work on the inflated
+ * bytes and never inflate the file again.
+ * A spill is keyed by the path, size and modification time of the compressed file. The spill
+ * directory holds at most {@link #MAX_SPILL_BYTES}; the least recently opened spills go first.
+ */
+public class GzipSpill {
+    public static final long CHECKPOINT_INTERVAL = 4L * 1024 * 1024;
+    public static final long MAX_SPILL_BYTES = 2L * 1024 * 1024 * 1024;
+    // Changed when the compressed offsets were dropped, so older indexes are inflated again
+    private static final int INDEX_MAGIC = 0x475A4359;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ExecutorService INFLATER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GzipInflater");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private GzipSpill() {
+    }
+
+    /**
+     * True if the file starts with the gzip magic bytes
+     */
+    public static boolean isGzip(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * True when a complete spill for the current version of {@code source} exists
+     */
+    public static boolean isInflated(Path source) {
+        try {
+            return readCheckpoints(source) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Inflated copy of {@code source}, inflating it first unless a complete spill exists.
+     * Blocks for as long as inflating takes.
+     */
+    public static Path inflate(Path source) throws IOException {
+        return inflate(source, null);
+    }
+
+    /**
+     * Inflate on a background thread, reporting the inflated byte count at each checkpoint
+     */
+    public static CompletableFuture<Path> inflateAsync(Path source, LongConsumer progress) {
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        INFLATER.execute(() -> {
+            try {
+                result.complete(inflate(source, progress));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static synchronized Path inflate(Path source, LongConsumer progress) throws IOException {
+        Path spill = spillPath(source);
+        if (readCheckpoints(source) != null) {
+            // The index modification time marks when the spill was last used
+            Files.setLastModifiedTime(indexPath(source), FileTime.from(Instant.now()));
+            return spill;
+        }
+        removeStaleSpills(source);
+
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        Path partial = spill.resolveSibling(spill.getFileName() + ".part");
+        try (InputStream compressed = new BufferedInputStream(Files.newInputStream(source), BUFFER_SIZE);
+             GZIPInputStream in = new GZIPInputStream(compressed, BUFFER_SIZE);
+             OutputStream out = Files.newOutputStream(partial)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long inflated = 0;
+            long lines = 0;
+            long nextCheckpoint = 0;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                if (inflated >= nextCheckpoint) {
+                    checkpoints.add(new Checkpoint(inflated, lines));
+                    nextCheckpoint = inflated + CHECKPOINT_INTERVAL;
+                    if (progress != null) {
+                        progress.accept(inflated);
+                    }
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                out.write(buffer, 0, read);
+                inflated += read;
+            }
+            checkpoints.add(new Checkpoint(inflated, lines));
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, spill, StandardCopyOption.REPLACE_EXISTING);
+        writeCheckpoints(source, checkpoints);
+        try {
+            evictSpills(spill);
+        } catch (IOException e) {
+            System.err.println("Could not trim the spill directory: " + e.getMessage());
+        }
+        return spill;
+    }
+
+    /**
+     * Checkpoints of the complete spill of {@code source}, the last one at the end of the
+     * inflated data; null if there is no complete spill for the current version of the file.
+     */
+    public static List<Checkpoint> readCheckpoints(Path source) throws IOException {
+        Path index = indexPath(source);
+        Path spill = spillPath(source);
+        if (!Files.exists(index) || !Files.exists(spill)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return null;
+            }
+            int count = in.readInt();
+            List<Checkpoint> checkpoints = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                checkpoints.add(new Checkpoint(in.readLong(), in.readLong()));
+            }
+            // The spill must hold exactly what was inflated
+            if (checkpoints.isEmpty() || checkpoints.get(count - 1).inflatedOffset != Files.size(spill)) {
+                return null;
+            }
+            return Collections.unmodifiableList(checkpoints);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Last checkpoint at or before {@code line}, so a line can be found by scanning from there
+     */
+    public static Checkpoint checkpointBefore(List<Checkpoint> checkpoints, long line) {
+        Checkpoint found = checkpoints.get(0);
+        for (Checkpoint checkpoint : checkpoints) {
+            if (checkpoint.lines > line) {
+                break;
+            }
+            found = checkpoint;
+        }
+        return found;
+    }
+
+    private static void writeCheckpoints(Path source, List<Checkpoint> checkpoints) throws IOException {
+        Path index = indexPath(source);
+        Path partial = index.resolveSibling(index.getFileName() + ".part");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(partial))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(checkpoints.size());
+            for (Checkpoint checkpoint : checkpoints) {
+                out.writeLong(checkpoint.inflatedOffset);
+                out.writeLong(checkpoint.lines);
+            }
+        }
+        Files.move(partial, index, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path spillPath(Path source) throws IOException {
+        return PreferencesManager.getCacheDir("spill").resolve(spillName(source) + ".log");
+    }
+
+    private static Path indexPath(Path source) throws IOException {
+        return PreferencesManager.getCacheDir("spill").resolve(spillName(source) + ".idx");
+    }
+
+    private static String spillName(Path source) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        return sourceKey(source) + "-" + attributes.size() + "-" + attributes.lastModifiedTime().toMillis();
+    }
+
+    private static String sourceKey(Path source) {
+        return Integer.toHexString(source.toAbsolutePath().normalize().toString().hashCode());
+    }
+
+    // Spills of earlier versions of the same file are never read again
+    private static void removeStaleSpills(Path source) throws IOException {
+        Path directory = PreferencesManager.getCacheDir("spill");
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, sourceKey(source) + "-*")) {
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Drop the least recently used spills, other than {@code keep}, until the spill directory
+     * fits in {@link #MAX_SPILL_BYTES}
+     */
+    private static void evictSpills(Path keep) throws IOException {
+        Path directory = PreferencesManager.getCacheDir("spill");
+        List<Path> spills = new ArrayList<>();
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.log")) {
+            for (Path spill : files) {
+                Path index = indexOf(spill);
+                long size = Files.size(spill);
+                if (Files.exists(index)) {
+                    size += Files.size(index);
+                    lastUsed.put(spill, Files.getLastModifiedTime(index));
+                } else {
+                    lastUsed.put(spill, Files.getLastModifiedTime(spill));
+                }
+                spills.add(spill);
+                total += size;
+            }
+        }
+        spills.sort(Comparator.comparing(lastUsed::get));
+        for (Path spill : spills) {
+            if (total <= MAX_SPILL_BYTES) {
+                break;
+            }
+            if (spill.equals(keep)) {
+                continue;
+            }
+            Path index = indexOf(spill);
+            long size = Files.size(spill) + (Files.exists(index) ? Files.size(index) : 0);
+            try {
+                // The index goes first so a half removed spill is never taken as complete
+                Files.deleteIfExists(index);
+                Files.deleteIfExists(spill);
+                total -= size;
+            } catch (IOException e) {
+                // Still open where open files cannot be deleted, it is tried again next time
+                System.err.println("Could not remove spill " + spill + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static Path indexOf(Path spill) {
+        String name = spill.getFileName().toString();
+        return spill.resolveSibling(name.substring(0, name.length() - ".log".length()) + ".idx");
+    }
+
+    /**
+     * Position in the inflated data at a checkpoint
+     */
+    public static class Checkpoint {
+        public final long inflatedOffset;
+        public final long lines;
+
+        Checkpoint(long inflatedOffset, long lines) {
+            this.inflatedOffset = inflatedOffset;
+            this.lines = lines;
+        }
+    }
+}
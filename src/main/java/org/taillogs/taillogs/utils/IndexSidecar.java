@@ -0,0 +1,265 @@
+package org.taillogs.taillogs.utils;
+
+import org.taillogs.taillogs.config.PreferencesManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * Line index of a file persisted under {@code ~/.tail_logs/index}, so reopening a large file
+ * only has to index what was appended since it was last seen.
+ * A sidecar is keyed by the absolute path and the file key (inode) of the file, and records
+ * a CRC of its first {@link #PREFIX_BYTES} bytes and of the bytes just before the indexed end.
+ * It is only used while both still match, which rejects a file replaced, truncated or
+ * rewritten under the same name. Line starts are stored as variable length deltas, about
+ * one byte per line for typical logs, followed by the {@link TimestampIndex} samples.
+ * The index directory holds at most {@link #MAX_INDEX_BYTES}; the least recently used sidecars go first.
+ */
+final class IndexSidecar {
+    /** Files smaller than this are indexed faster than their sidecar is read */
+    static final long MIN_FILE_SIZE = 16L * 1024 * 1024;
+    static final long MAX_INDEX_BYTES = 256L * 1024 * 1024;
+    private static final int MAGIC = 0x4C494458;
+    private static final int VERSION = 2;
+    private static final int PREFIX_BYTES = 64 * 1024;
+    private static final int SUFFIX_BYTES = 4 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private IndexSidecar() {
+    }
+
+    /**
+     * Line starts read back from a valid sidecar
+     */
+    static final class Loaded {
+        final long indexedEnd;
+        /** Starts of every line after the first, in file order */
+        final List<long[]> lineStarts;
+        final TimestampIndex.Sampler samples;
+
+        Loaded(long indexedEnd, List<long[]> lineStarts, TimestampIndex.Sampler samples) {
+            this.indexedEnd = indexedEnd;
+            this.lineStarts = lineStarts;
+            this.samples = samples;
+        }
+    }
+
+    /**
+     * Read the sidecar of {@code file}, null if there is none or it no longer describes the file
+     */
+    static Loaded load(Path file, FileChannel channel) {
+        Path sidecar;
+        try {
+            sidecar = sidecarPath(file);
+            if (!Files.exists(sidecar)) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !in.readUTF().equals(identity(file))) {
+                return null;
+            }
+            long indexedEnd = in.readLong();
+            long prefixCrc = in.readLong();
+            long suffixCrc = in.readLong();
+            long count = in.readLong();
+            if (indexedEnd > channel.size()
+                    || prefixCrc != crc(channel, 0, Math.min(PREFIX_BYTES, indexedEnd))
+                    || suffixCrc != crc(channel, Math.max(0, indexedEnd - SUFFIX_BYTES), indexedEnd)) {
+                return null;
+            }
+            List<long[]> starts = new ArrayList<>();
+            long[] chunk = new long[(int) Math.min(CHUNK_SIZE, count)];
+            int filled = 0;
+            long previous = 0;
+            for (long i = 0; i < count; i++) {
+                previous += readVarLong(in);
+                if (filled == chunk.length) {
+                    starts.add(chunk);
+                    chunk = new long[(int) Math.min(CHUNK_SIZE, count - i)];
+                    filled = 0;
+                }
+                chunk[filled++] = previous;
+            }
+            starts.add(Arrays.copyOf(chunk, filled));
+            TimestampIndex.Sampler samples = new TimestampIndex.Sampler(0);
+            int sampleCount = in.readInt();
+            samples.offsets = new long[Math.max(1, sampleCount)];
+            samples.times = new long[Math.max(1, sampleCount)];
+            long sampleOffset = 0;
+            for (int i = 0; i < sampleCount; i++) {
+                sampleOffset += readVarLong(in);
+                samples.offsets[i] = sampleOffset;
+                samples.times[i] = in.readLong();
+            }
+            samples.count = sampleCount;
+            markUsed(sidecar);
+            return new Loaded(indexedEnd, starts, samples);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable line index " + sidecar + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the sidecar for the first {@code indexedEnd} bytes of {@code file}.
+     * {@code lineStart} gives the start of line 1 to {@code lineCount - 1}; the samples of
+     * {@code timestamps} up to {@code indexedEnd} are stored with them.
+     */
+    static void save(Path file, FileChannel channel, long indexedEnd, long lineCount,
+                     LongUnaryOperator lineStart, TimestampIndex timestamps) throws IOException {
+        Path sidecar = sidecarPath(file);
+        Path partial = sidecar.resolveSibling(sidecar.getFileName() + ".part");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(identity(file));
+            out.writeLong(indexedEnd);
+            out.writeLong(crc(channel, 0, Math.min(PREFIX_BYTES, indexedEnd)));
+            out.writeLong(crc(channel, Math.max(0, indexedEnd - SUFFIX_BYTES), indexedEnd));
+            out.writeLong(lineCount - 1);
+            long previous = 0;
+            for (long line = 1; line < lineCount; line++) {
+                long start = lineStart.applyAsLong(line);
+                writeVarLong(out, start - previous);
+                previous = start;
+            }
+            int sampleCount = 0;
+            while (sampleCount < timestamps.size() && timestamps.getOffset(sampleCount) < indexedEnd) {
+                sampleCount++;
+            }
+            out.writeInt(sampleCount);
+            long previousSample = 0;
+            for (int i = 0; i < sampleCount; i++) {
+                long offset = timestamps.getOffset(i);
+                writeVarLong(out, offset - previousSample);
+                out.writeLong(timestamps.getTime(i));
+                previousSample = offset;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, sidecar, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            evictSidecars(sidecar.getParent(), sidecar, MAX_INDEX_BYTES);
+        } catch (IOException e) {
+            System.err.println("Could not trim the line index directory: " + e.getMessage());
+        }
+    }
+
+    // The modification time marks when a sidecar was last used
+    private static void markUsed(Path sidecar) {
+        try {
+            Files.setLastModifiedTime(sidecar, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            System.err.println("Could not mark line index " + sidecar + " as used: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the least recently used sidecars in {@code directory}, other than {@code keep},
+     * until they fit in {@code maxBytes}
+     */
+    static void evictSidecars(Path directory, Path keep, long maxBytes) throws IOException {
+        List<Path> sidecars = new ArrayList<>();
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.idx")) {
+            for (Path sidecar : files) {
+                sidecars.add(sidecar);
+                lastUsed.put(sidecar, Files.getLastModifiedTime(sidecar));
+                total += Files.size(sidecar);
+            }
+        }
+        sidecars.sort(Comparator.comparing(lastUsed::get));
+        for (Path sidecar : sidecars) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (sidecar.equals(keep)) {
+                continue;
+            }
+            long size = Files.size(sidecar);
+            try {
+                Files.deleteIfExists(sidecar);
+                total -= size;
+            } catch (IOException e) {
+                System.err.println("Could not remove line index " + sidecar + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static Path sidecarPath(Path file) throws IOException {
+        String key = Integer.toHexString(file.toAbsolutePath().normalize().toString().hashCode());
+        return PreferencesManager.getCacheDir("index").resolve(key + ".idx");
+    }
+
+    private static String identity(Path file) throws IOException {
+        Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        return file.toAbsolutePath().normalize() + "|" + (fileKey != null ? fileKey : "");
+    }
+
+    private static long crc(FileChannel channel, long start, long end) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, end - start)));
+        long position = start;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                throw new EOFException("File ends before " + end);
+            }
+            buffer.flip();
+            crc.update(buffer);
+            position += read;
+        }
+        return crc.getValue();
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,228 @@
+package org.taillogs.taillogs.utils;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Compressed set of line numbers, laid out like a roaring bitmap: the numbers are split into
+ * blocks of 65536 by their high bits, and each block holds its low 16 bits either as a sorted
+ * {@code char[]} while it has at most {@link #ARRAY_MAX} entries, or as a 65536 bit map once
+ * it is denser. Sparse matches cost two bytes per line and dense ones one bit.
+ * Lines are appended in increasing order, as a file is scanned front to back; intersections
+ * build a new bitmap block by block, so combining rules over millions of lines takes
+ * milliseconds. Not thread safe.
+ */
+public final class LineBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private long[] keys = new long[4];
+    private Block[] blocks = new Block[4];
+    private int blockCount = 0;
+    private long cardinality = 0;
+    private long lastLine = -1;
+
+    /**
+     * Add {@code line}, which must be greater than every line added before
+     */
+    public void append(long line) {
+        if (line <= lastLine) {
+            throw new IllegalArgumentException("Line " + line + " is not after the last line added");
+        }
+        lastLine = line;
+        long key = line >>> 16;
+        Block block;
+        if (blockCount > 0 && keys[blockCount - 1] == key) {
+            block = blocks[blockCount - 1];
+        } else {
+            block = new Block();
+            addBlock(key, block);
+        }
+        block.add((char) line);
+        cardinality++;
+    }
+
+    public long cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Independent copy, which later appends to this bitmap do not change
+     */
+    public LineBitmap copy() {
+        LineBitmap result = new LineBitmap();
+        for (int b = 0; b < blockCount; b++) {
+            result.addBlock(keys[b], blocks[b].copy());
+        }
+        result.cardinality = cardinality;
+        result.lastLine = lastLine;
+        return result;
+    }
+
+    /**
+     * Lines that are in both this bitmap and {@code other}
+     */
+    public LineBitmap and(LineBitmap other) {
+        LineBitmap result = new LineBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < blockCount && j < other.blockCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Block block = blocks[i].and(other.blocks[j]);
+                if (block != null) {
+                    result.addBlock(keys[i], block);
+                    result.cardinality += block.cardinality;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visit the lines in increasing order until {@code visitor} returns false
+     * @return false if the visit was stopped
+     */
+    public boolean forEach(LongPredicate visitor) {
+        for (int b = 0; b < blockCount; b++) {
+            long high = keys[b] << 16;
+            Block block = blocks[b];
+            if (block.words == null) {
+                for (int k = 0; k < block.cardinality; k++) {
+                    if (!visitor.test(high | block.values[k])) {
+                        return false;
+                    }
+                }
+            } else {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = block.words[w];
+                    while (word != 0) {
+                        int bit = Long.numberOfTrailingZeros(word);
+                        if (!visitor.test(high | ((long) w << 6) | bit)) {
+                            return false;
+                        }
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void addBlock(long key, Block block) {
+        if (blockCount == keys.length) {
+            keys = Arrays.copyOf(keys, blockCount * 2);
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+        }
+        keys[blockCount] = key;
+        blocks[blockCount] = block;
+        blockCount++;
+    }
+
+    /**
+     * The low 16 bits of the lines of one block, as a sorted array or as a bit map
+     */
+    private static final class Block {
+        char[] values = new char[8];
+        long[] words;
+        int cardinality;
+
+        void add(char low) {
+            if (words != null) {
+                words[low >>> 6] |= 1L << low;
+                cardinality++;
+                return;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                add(low);
+                return;
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            values[cardinality++] = low;
+        }
+
+        Block copy() {
+            Block result = new Block();
+            result.values = values != null ? Arrays.copyOf(values, cardinality) : null;
+            result.words = words != null ? words.clone() : null;
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        private void toBitmap() {
+            words = new long[BITMAP_WORDS];
+            for (int k = 0; k < cardinality; k++) {
+                words[values[k] >>> 6] |= 1L << values[k];
+            }
+            values = null;
+        }
+
+        /**
+         * Intersection with {@code other}, null if it is empty
+         */
+        Block and(Block other) {
+            Block result = new Block();
+            if (words == null && other.words == null) {
+                result.values = new char[Math.min(cardinality, other.cardinality)];
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < other.cardinality) {
+                    if (values[i] < other.values[j]) {
+                        i++;
+                    } else if (values[i] > other.values[j]) {
+                        j++;
+                    } else {
+                        result.values[result.cardinality++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else if (words == null || other.words == null) {
+                Block array = words == null ? this : other;
+                Block bitmap = words == null ? other : this;
+                result.values = new char[array.cardinality];
+                for (int k = 0; k < array.cardinality; k++) {
+                    char low = array.values[k];
+                    if ((bitmap.words[low >>> 6] & (1L << low)) != 0) {
+                        result.values[result.cardinality++] = low;
+                    }
+                }
+            } else {
+                long[] anded = new long[BITMAP_WORDS];
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    anded[w] = words[w] & other.words[w];
+                    count += Long.bitCount(anded[w]);
+                }
+                if (count > ARRAY_MAX) {
+                    result.values = null;
+                    result.words = anded;
+                    result.cardinality = count;
+                    return result;
+                }
+                // Sparse enough again for the array form
+                result.values = new char[count];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = anded[w];
+                    while (word != 0) {
+                        result.values[result.cardinality++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            }
+            return result.cardinality == 0 ? null : result;
+        }
+    }
+}
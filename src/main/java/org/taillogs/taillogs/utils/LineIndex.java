@@ -0,0 +1,295 @@
+package org.taillogs.taillogs.utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Byte offset of every line start in a file, kept in fixed size {@code long[]} chunks so
+ * lookups by line number are O(1) and no per-line objects are created.
+ * The initial scan is split into segments and run in parallel on the common fork-join pool;
+ * afterwards the index is extended sequentially with {@link #extendTo(long)} as the file grows.
+ * Timestamps are sampled into a {@link TimestampIndex} by the same scans.
+ * Large files keep their index in an {@link IndexSidecar}, so a file seen before only has
+ * its appended tail scanned when it is opened again.
+ * Line numbers are 0-based here.
+ */
+public class LineIndex {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long SEGMENT_SIZE = 8L * 1024 * 1024;
+    private static final int SCAN_CHUNK = 64 * 1024;
+    private static final long SAVE_GROWTH = 4L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final List<long[]> chunks = new ArrayList<>();
+    private final TimestampIndex timestamps = new TimestampIndex();
+    private TimestampIndex.Sampler tailSampler = new TimestampIndex.Sampler(0);
+    private long lineCount = 0;
+    private long indexedEnd = 0;
+    private long requestedEnd = 0;
+    private long savedEnd = 0;
+    private boolean building = false;
+    private boolean failed = false;
+
+    LineIndex(FileChannel channel) {
+        this.channel = channel;
+        add(0);
+    }
+
+    /**
+     * Index the first {@code end} bytes of {@code file} in the background, starting from its
+     * sidecar when it has a valid one.
+     */
+    void buildAsync(Path file, long end) {
+        synchronized (this) {
+            building = true;
+            requestedEnd = Math.max(requestedEnd, end);
+        }
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                IndexSidecar.Loaded loaded = end >= IndexSidecar.MIN_FILE_SIZE ? IndexSidecar.load(file, channel) : null;
+                long scanFrom = loaded != null ? loaded.indexedEnd : 0;
+                List<Segment> segments = new ArrayList<>();
+                if (loaded != null) {
+                    segments.add(new Segment(loaded.lineStarts, loaded.samples));
+                }
+                if (scanFrom < end) {
+                    segments.addAll(ForkJoinPool.commonPool().invoke(new SegmentScan(channel, scanFrom, end)));
+                }
+                synchronized (this) {
+                    for (Segment segment : segments) {
+                        for (long[] starts : segment.starts) {
+                            for (long start : starts) {
+                                add(start);
+                            }
+                        }
+                        segment.samples.addTo(timestamps);
+                    }
+                    int sampleCount = timestamps.size();
+                    tailSampler = new TimestampIndex.Sampler(sampleCount == 0 ? 0
+                            : timestamps.getOffset(sampleCount - 1) + TimestampIndex.SAMPLE_INTERVAL);
+                    indexedEnd = Math.max(end, scanFrom);
+                    savedEnd = scanFrom;
+                    building = false;
+                }
+                extendTo(requestedEnd);
+                if (end >= IndexSidecar.MIN_FILE_SIZE) {
+                    saveIfGrown(file);
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    building = false;
+                    failed = true;
+                }
+                System.err.println("Failed to index lines: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Write the sidecar of {@code file} if more than {@link #SAVE_GROWTH} bytes were indexed since it was last written
+     */
+    void saveIfGrown(Path file) {
+        long end;
+        long count;
+        List<long[]> snapshot;
+        synchronized (this) {
+            if (building || failed || indexedEnd - savedEnd < SAVE_GROWTH) {
+                return;
+            }
+            end = indexedEnd;
+            count = lineCount;
+            // Chunks are only ever appended to, the entries below count no longer change
+            snapshot = new ArrayList<>(chunks);
+        }
+        try {
+            IndexSidecar.save(file, channel, end, count,
+                    line -> snapshot.get((int) (line >>> CHUNK_SHIFT))[(int) (line & CHUNK_MASK)], timestamps);
+            synchronized (this) {
+                savedEnd = Math.max(savedEnd, end);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to save line index: " + e.getMessage());
+        }
+    }
+
+    public synchronized boolean isReady() {
+        return !building && !failed;
+    }
+
+    /**
+     * Sampled timestamps of the indexed part of the file
+     */
+    public TimestampIndex getTimestamps() {
+        return timestamps;
+    }
+
+    public synchronized long getIndexedEnd() {
+        return indexedEnd;
+    }
+
+    /**
+     * Number of line starts known, including the empty line after a trailing newline
+     */
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Byte offset where {@code line} starts, -1 if the line is not indexed
+     */
+    public synchronized long lineStart(long line) {
+        if (line < 0 || line >= lineCount) {
+            return -1;
+        }
+        return get(line);
+    }
+
+    /**
+     * Line containing the byte at {@code offset}
+     */
+    public synchronized long lineAt(long offset) {
+        long low = 0;
+        long high = lineCount - 1;
+        while (low < high) {
+            long mid = (low + high + 1) >>> 1;
+            if (get(mid) <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index the bytes appended since the last call up to {@code end}. While the initial
+     * scan is still running the request is remembered and applied once it finishes.
+     */
+    public synchronized void extendTo(long end) {
+        if (building) {
+            requestedEnd = Math.max(requestedEnd, end);
+            return;
+        }
+        if (failed || end <= indexedEnd) {
+            return;
+        }
+        try {
+            long position = indexedEnd;
+            while (position < end) {
+                int length = (int) Math.min(SCAN_CHUNK, end - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                for (int i = 0; i < length; i++) {
+                    if (buffer.get(i) == '\n') {
+                        add(position + i + 1);
+                        if (i + 1 < length) {
+                            tailSampler.lineStart(buffer, i + 1, length, position);
+                        }
+                    }
+                }
+                position += length;
+            }
+            tailSampler.addTo(timestamps);
+            indexedEnd = end;
+        } catch (IOException e) {
+            failed = true;
+            System.err.println("Failed to extend line index: " + e.getMessage());
+        }
+    }
+
+    private long get(long line) {
+        return chunks.get((int) (line >>> CHUNK_SHIFT))[(int) (line & CHUNK_MASK)];
+    }
+
+    private void add(long start) {
+        int slot = (int) (lineCount & CHUNK_MASK);
+        if (slot == 0) {
+            chunks.add(new long[CHUNK_SIZE]);
+        }
+        chunks.get(chunks.size() - 1)[slot] = start;
+        lineCount++;
+    }
+
+    /**
+     * Line starts and timestamp samples of a scanned range
+     */
+    private static class Segment {
+        final List<long[]> starts;
+        final TimestampIndex.Sampler samples;
+
+        Segment(List<long[]> starts, TimestampIndex.Sampler samples) {
+            this.starts = starts;
+            this.samples = samples;
+        }
+    }
+
+    /**
+     * Line starts in [start, end), one segment per leaf range in file order
+     */
+    @SuppressWarnings("serial") // Fork-join tasks are never serialized
+    private static class SegmentScan extends RecursiveTask<List<Segment>> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        SegmentScan(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<Segment> compute() {
+            if (end - start > SEGMENT_SIZE) {
+                long middle = start + (end - start) / 2;
+                SegmentScan left = new SegmentScan(channel, start, middle);
+                SegmentScan right = new SegmentScan(channel, middle, end);
+                left.fork();
+                List<Segment> rightSegments = right.compute();
+                List<Segment> merged = left.join();
+                merged.addAll(rightSegments);
+                return merged;
+            }
+            List<Segment> single = new ArrayList<>();
+            single.add(scan());
+            return single;
+        }
+
+        private Segment scan() {
+            long[] starts = new long[1024];
+            int count = 0;
+            TimestampIndex.Sampler sampler = new TimestampIndex.Sampler(start);
+            try {
+                int length = (int) (end - start);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                if (start == 0 && length > 0) {
+                    sampler.lineStart(buffer, 0, length, start);
+                }
+                for (int i = 0; i < length; i++) {
+                    if (buffer.get(i) == '\n') {
+                        if (count == starts.length) {
+                            starts = Arrays.copyOf(starts, count * 2);
+                        }
+                        starts[count++] = start + i + 1;
+                        if (i + 1 < length) {
+                            sampler.lineStart(buffer, i + 1, length, start);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            List<long[]> single = new ArrayList<>();
+            single.add(Arrays.copyOf(starts, count));
+            return new Segment(single, sampler);
+        }
+    }
+}
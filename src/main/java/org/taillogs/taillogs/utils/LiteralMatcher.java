@@ -0,0 +1,244 @@
+package org.taillogs.taillogs.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds any number of literal strings in one pass over a text (Aho-Corasick).
+ * The trie of the literals is turned into a complete transition table, so each character
+ * costs one table lookup however many literals there are. Characters that occur in no
+ * literal share one column of the table, which keeps it small for the short ASCII words
+ * rules usually are. With {@code ignoreCase} ASCII letters are folded, the same matching
+ * as a quoted {@link java.util.regex.Pattern#CASE_INSENSITIVE} pattern.
+ * Immutable once built, so one matcher can be shared by every thread using it.
+ */
+public final class LiteralMatcher {
+    private static final int[] NO_OUTPUT = new int[0];
+
+    /**
+     * Receives the occurrences of the literals, in order of their end
+     */
+    public interface MatchHandler {
+        /**
+         * Called for literal {@code literal} found at {@code start} to {@code end}; return false to stop the scan
+         */
+        boolean onMatch(int literal, int start, int end);
+    }
+
+    private final int[] lengths;
+    /** Column of each ASCII character in the table, 0 for characters of no literal */
+    private final int[] asciiColumns = new int[128];
+    /** Sorted characters beyond ASCII that occur in a literal, their column is index + asciiCount + 1 */
+    private final char[] otherChars;
+    private final int asciiCount;
+    private final int columns;
+    private final int[] transitions;
+    /** Literals ending at each state, including those ending at its suffixes */
+    private final int[][] outputs;
+    private final long allMask;
+
+    public LiteralMatcher(List<String> literals, boolean ignoreCase) {
+        lengths = new int[literals.size()];
+        String[] folded = new String[literals.size()];
+        for (int i = 0; i < folded.length; i++) {
+            String literal = literals.get(i);
+            folded[i] = ignoreCase ? foldAscii(literal) : literal;
+            lengths[i] = literal.length();
+        }
+
+        // Alphabet of the literals, each distinct character gets its own column
+        boolean[] asciiUsed = new boolean[128];
+        StringBuilder others = new StringBuilder();
+        for (String literal : folded) {
+            for (int k = 0; k < literal.length(); k++) {
+                char c = literal.charAt(k);
+                if (c < 128) {
+                    asciiUsed[c] = true;
+                } else if (others.indexOf(String.valueOf(c)) < 0) {
+                    others.append(c);
+                }
+            }
+        }
+        int column = 1;
+        for (int c = 0; c < 128; c++) {
+            if (asciiUsed[c]) {
+                asciiColumns[c] = column++;
+            }
+        }
+        if (ignoreCase) {
+            for (int c = 'A'; c <= 'Z'; c++) {
+                asciiColumns[c] = asciiColumns[c + ('a' - 'A')];
+            }
+        }
+        asciiCount = column - 1;
+        otherChars = others.toString().toCharArray();
+        Arrays.sort(otherChars);
+        columns = column + otherChars.length;
+
+        // Trie of the literals; a transition of 0 is a missing edge until the table is completed
+        int maxStates = 1;
+        for (String literal : folded) {
+            maxStates += literal.length();
+        }
+        int[] table = new int[maxStates * columns];
+        int[][] ends = new int[maxStates][];
+        int states = 1;
+        for (int i = 0; i < folded.length; i++) {
+            String literal = folded[i];
+            if (literal.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int k = 0; k < literal.length(); k++) {
+                int edge = state * columns + columnOf(literal.charAt(k));
+                if (table[edge] == 0) {
+                    table[edge] = states++;
+                }
+                state = table[edge];
+            }
+            ends[state] = append(ends[state], i);
+        }
+
+        // Breadth first, point every missing edge at the edge of the longest proper suffix
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        int[][] out = new int[states][];
+        out[0] = NO_OUTPUT;
+        for (int c = 0; c < columns; c++) {
+            int next = table[c];
+            if (next != 0) {
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int[] own = ends[state];
+            int[] inherited = out[failure[state]];
+            out[state] = own == null ? inherited : concat(own, inherited);
+            for (int c = 0; c < columns; c++) {
+                int edge = state * columns + c;
+                int next = table[edge];
+                if (next != 0) {
+                    failure[next] = table[failure[state] * columns + c];
+                    queue[tail++] = next;
+                } else {
+                    table[edge] = table[failure[state] * columns + c];
+                }
+            }
+        }
+        transitions = states == maxStates ? table : Arrays.copyOf(table, states * columns);
+        outputs = out;
+
+        long mask = 0;
+        for (int i = 0; i < Math.min(64, folded.length); i++) {
+            if (!folded[i].isEmpty()) {
+                mask |= 1L << i;
+            }
+        }
+        allMask = mask;
+    }
+
+    public int size() {
+        return lengths.length;
+    }
+
+    /**
+     * Report every occurrence of every literal in {@code text}, overlapping ones included
+     */
+    public void findAll(CharSequence text, MatchHandler handler) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * columns + columnOf(text.charAt(i))];
+            int[] found = outputs[state];
+            for (int literal : found) {
+                if (!handler.onMatch(literal, i + 1 - lengths[literal], i + 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * True if {@code text} contains every literal; empty literals are contained in any text.
+     * Stops as soon as the last missing literal is seen.
+     */
+    public boolean containsAll(CharSequence text) {
+        if (lengths.length > 64) {
+            boolean[] seen = new boolean[lengths.length];
+            int[] missing = {0};
+            for (int i = 0; i < lengths.length; i++) {
+                if (lengths[i] > 0) {
+                    missing[0]++;
+                }
+            }
+            if (missing[0] > 0) {
+                findAll(text, (literal, start, end) -> {
+                    if (!seen[literal]) {
+                        seen[literal] = true;
+                        missing[0]--;
+                    }
+                    return missing[0] > 0;
+                });
+            }
+            return missing[0] == 0;
+        }
+        if (allMask == 0) {
+            return true;
+        }
+        long seen = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * columns + columnOf(text.charAt(i))];
+            for (int literal : outputs[state]) {
+                seen |= 1L << literal;
+            }
+            if (seen == allMask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int columnOf(char c) {
+        if (c < 128) {
+            return asciiColumns[c];
+        }
+        int found = otherChars.length == 0 ? -1 : Arrays.binarySearch(otherChars, c);
+        return found < 0 ? 0 : asciiCount + 1 + found;
+    }
+
+    private static String foldAscii(String text) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? text : new String(chars);
+    }
+
+    private static int[] append(int[] values, int value) {
+        if (values == null) {
+            return new int[] {value};
+        }
+        int[] grown = Arrays.copyOf(values, values.length + 1);
+        grown[values.length] = value;
+        return grown;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        int[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
@@ -0,0 +1,279 @@
+package org.taillogs.taillogs.utils;
+
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.StyledDocument;
+import org.fxmisc.richtext.model.TwoDimensional;
+
+import java.util.List;
+
+/**
+ * Edits and reads of the text in the log view. The area's own document is the only copy of
+ * the text; every edit goes through here so the readers know what changed. Readers such as
+ * search, filtering and highlighting take a {@link Snapshot}, which reads the area's immutable
+ * document paragraph by paragraph instead of concatenating it the way {@code CodeArea.getText()} does.
+ * Line breaks are normalized to {@code \n} the same way the area does, so offsets in a
+ * snapshot are offsets in the area. Must be used from the JavaFX application thread.
+ */
+public class LogDocument {
+    private final CodeArea area;
+    private Snapshot snapshot;
+    private int restyleFrom = 0;
+    private final TailAppendQueue appendQueue;
+
+    public LogDocument(CodeArea area) {
+        this.area = area;
+        this.appendQueue = new TailAppendQueue(this);
+    }
+
+    /**
+     * Queue through which tail workers hand their lines to this document
+     */
+    public TailAppendQueue getAppendQueue() {
+        return appendQueue;
+    }
+
+    /**
+     * Offset from which the text has changed since the last call; text before it still carries
+     * its styles. Resets the mark to the end of the document.
+     */
+    public int takeRestyleFrom() {
+        int length = length();
+        int from = Math.min(restyleFrom, length);
+        restyleFrom = length;
+        return from;
+    }
+
+    public CodeArea getArea() {
+        return area;
+    }
+
+    public int length() {
+        return area.getLength();
+    }
+
+    public boolean isEmpty() {
+        return area.getLength() == 0;
+    }
+
+    /**
+     * Immutable view of the current text. Repeated calls without edits in between return the same instance.
+     */
+    public Snapshot snapshot() {
+        if (snapshot == null) {
+            // The area's content snapshot is its current immutable document, nothing is copied
+            snapshot = new Snapshot(area.getContent().snapshot());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Replace the whole text.
+     * @return number of characters now in the document
+     */
+    public int replace(String text) {
+        snapshot = null;
+        restyleFrom = 0;
+        String normalized = normalize(text);
+        area.replaceText(normalized);
+        return normalized.length();
+    }
+
+    public void clear() {
+        replace("");
+    }
+
+    /**
+     * @return number of characters added after line break normalization
+     */
+    public int append(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return 0;
+        }
+        snapshot = null;
+        restyleFrom = Math.min(restyleFrom, length());
+        area.appendText(normalized);
+        return normalized.length();
+    }
+
+    /**
+     * @return number of characters added after line break normalization
+     */
+    public int prepend(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return 0;
+        }
+        snapshot = null;
+        restyleFrom = 0;
+        area.insertText(0, normalized);
+        return normalized.length();
+    }
+
+    /**
+     * Remove the first {@code chars} characters.
+     */
+    public void removeHead(int chars) {
+        if (chars <= 0) {
+            return;
+        }
+        snapshot = null;
+        int removed = Math.min(chars, length());
+        restyleFrom = Math.max(0, restyleFrom - removed);
+        area.deleteText(0, removed);
+    }
+
+    /**
+     * Remove the last {@code chars} characters.
+     */
+    public void removeTail(int chars) {
+        if (chars <= 0) {
+            return;
+        }
+        snapshot = null;
+        int length = length();
+        int removed = Math.min(chars, length);
+        restyleFrom = Math.min(restyleFrom, length - removed);
+        area.deleteText(length - removed, length);
+    }
+
+    /**
+     * Convert {@code \r\n} and lone {@code \r} to {@code \n}, as the area does when text is inserted
+     */
+    static String normalize(String text) {
+        if (text.indexOf('\r') < 0) {
+            return text;
+        }
+        return text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    /**
+     * Read-only character view over one version of the area's document. Paragraphs are read in
+     * place, with a {@code \n} between each two of them.
+     */
+    public static class Snapshot implements CharSequence {
+        private final StyledDocument<?, String, ?> document;
+        private final int paragraphCount;
+        private final int length;
+        // Last paragraph used; reads are mostly sequential so this avoids a lookup per character
+        private int paragraph = -1;
+        private int paragraphStart = 0;
+        private String paragraphText = "";
+
+        Snapshot(StyledDocument<?, String, ?> document) {
+            this.document = document;
+            this.paragraphCount = document.getParagraphs().size();
+            this.length = document.length();
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            locate(index);
+            int column = index - paragraphStart;
+            return column < paragraphText.length() ? paragraphText.charAt(column) : '\n';
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return substring(start, end);
+        }
+
+        public String substring(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + length);
+            }
+            if (start == end) {
+                return "";
+            }
+            locate(start);
+            if (end <= paragraphStart + paragraphText.length()) {
+                return paragraphText.substring(start - paragraphStart, end - paragraphStart);
+            }
+            StringBuilder builder = new StringBuilder(end - start);
+            int from = start - paragraphStart;
+            while (true) {
+                int to = Math.min(paragraphText.length(), end - paragraphStart);
+                builder.append(paragraphText, from, to);
+                if (paragraphStart + paragraphText.length() >= end) {
+                    break;
+                }
+                builder.append('\n');
+                if (paragraphStart + paragraphText.length() + 1 >= end) {
+                    break;
+                }
+                next();
+                from = 0;
+            }
+            return builder.toString();
+        }
+
+        /**
+         * Offset of the next {@code ch} at or after {@code from}, -1 if there is none
+         */
+        public int indexOf(char ch, int from) {
+            if (from >= length) {
+                return -1;
+            }
+            locate(Math.max(0, from));
+            int column = Math.max(0, from - paragraphStart);
+            while (true) {
+                if (ch == '\n') {
+                    // Every paragraph but the last ends with a line break
+                    return paragraph < paragraphCount - 1 ? paragraphStart + paragraphText.length() : -1;
+                }
+                int found = paragraphText.indexOf(ch, column);
+                if (found >= 0) {
+                    return paragraphStart + found;
+                }
+                if (paragraph >= paragraphCount - 1) {
+                    return -1;
+                }
+                next();
+                column = 0;
+            }
+        }
+
+        /**
+         * Make the paragraph holding {@code index}, or ending with the line break at it, current
+         */
+        private void locate(int index) {
+            if (paragraph >= 0 && index >= paragraphStart && index <= paragraphStart + paragraphText.length()) {
+                return;
+            }
+            if (paragraph >= 0 && paragraph < paragraphCount - 1
+                    && index == paragraphStart + paragraphText.length() + 1) {
+                next();
+                return;
+            }
+            TwoDimensional.Position position = document.offsetToPosition(index, TwoDimensional.Bias.Forward);
+            paragraph = position.getMajor();
+            paragraphStart = index - position.getMinor();
+            paragraphText = textOf(paragraph);
+        }
+
+        private void next() {
+            paragraphStart += paragraphText.length() + 1;
+            paragraph++;
+            paragraphText = textOf(paragraph);
+        }
+
+        private String textOf(int index) {
+            // A CodeArea paragraph is usually a single segment, which is returned without copying
+            List<String> segments = document.getParagraph(index).getSegments();
+            return segments.size() == 1 ? segments.get(0) : String.join("", segments);
+        }
+
+        @Override
+        public String toString() {
+            return substring(0, length);
+        }
+    }
+}
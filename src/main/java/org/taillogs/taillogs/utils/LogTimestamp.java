@@ -0,0 +1,219 @@
+package org.taillogs.taillogs.utils;
+
+import java.nio.ByteBuffer;
+import java.time.Year;
+
+/**
+ * Finds the timestamp a log line starts with, without regular expressions or allocation so
+ * it can run over every line of multi-gigabyte files. Understands ISO style stamps such as
+ * {@code 2024-03-01 12:00:00,123} or {@code 2024/03/01T12:00:00.123+02:00} within the first
+ * {@link #SCAN_CHARS} characters, and syslog stamps such as {@code Mar  1 12:00:00} at the
+ * start of the line, which have no year and are taken to be in the current one.
+ * Stamps without a zone offset are compared as they are written, so files from different
+ * time zones only line up when they log with an offset.
+ */
+public final class LogTimestamp {
+    /** Returned when the line has no timestamp */
+    public static final long NONE = Long.MIN_VALUE;
+    private static final int SCAN_CHARS = 64;
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final int CURRENT_YEAR = Year.now().getValue();
+
+    private LogTimestamp() {
+    }
+
+    /**
+     * Milliseconds since the epoch of the timestamp at the start of {@code line}, {@link #NONE} if there is none
+     */
+    public static long parse(CharSequence line) {
+        int limit = Math.min(line.length(), SCAN_CHARS);
+        for (int i = 0; i + 19 <= limit; i++) {
+            if (isDigit(line, i) && (i == 0 || !isDigit(line, i - 1))) {
+                long millis = parseIso(line, i);
+                if (millis != NONE) {
+                    return millis;
+                }
+            }
+        }
+        return parseSyslog(line);
+    }
+
+    /**
+     * Milliseconds into the day of a bare {@code HH:mm:ss[.SSS]} time, {@link #NONE} if {@code text} is not one
+     */
+    public static long parseTimeOfDay(CharSequence text) {
+        if (text.length() < 8 || !isDigit(text, 0) || !isDigit(text, 1)) {
+            return NONE;
+        }
+        return parseTime(text, 0, 1970, 1, 1);
+    }
+
+    /**
+     * Start of the UTC day that {@code millis} falls in
+     */
+    public static long startOfDay(long millis) {
+        return Math.floorDiv(millis, 86_400_000L) * 86_400_000L;
+    }
+
+    // yyyy-MM-dd[T ]HH:mm:ss[.fraction][Z|+hh[:mm]], '/' is accepted between the date fields
+    private static long parseIso(CharSequence s, int i) {
+        int year = digits(s, i, 4);
+        char dateSeparator = s.charAt(i + 4);
+        if (year < 0 || (dateSeparator != '-' && dateSeparator != '/') || s.charAt(i + 7) != dateSeparator) {
+            return NONE;
+        }
+        int month = digits(s, i + 5, 2);
+        int day = digits(s, i + 8, 2);
+        char timeSeparator = s.charAt(i + 10);
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || (timeSeparator != 'T' && timeSeparator != ' ')) {
+            return NONE;
+        }
+        return parseTime(s, i + 11, year, month, day);
+    }
+
+    // MMM d HH:mm:ss, the day padded with a space or zero
+    private static long parseSyslog(CharSequence s) {
+        if (s.length() < 15) {
+            return NONE;
+        }
+        int month = -1;
+        for (int m = 0; m < 12; m++) {
+            if (s.charAt(0) == MONTHS.charAt(m * 3) && s.charAt(1) == MONTHS.charAt(m * 3 + 1)
+                    && s.charAt(2) == MONTHS.charAt(m * 3 + 2)) {
+                month = m + 1;
+                break;
+            }
+        }
+        if (month < 0 || s.charAt(3) != ' ') {
+            return NONE;
+        }
+        int day = s.charAt(4) == ' ' ? digits(s, 5, 1) : digits(s, 4, 2);
+        if (day < 1 || day > daysInMonth(CURRENT_YEAR, month) || s.charAt(6) != ' ') {
+            return NONE;
+        }
+        return parseTime(s, 7, CURRENT_YEAR, month, day);
+    }
+
+    private static long parseTime(CharSequence s, int i, int year, int month, int day) {
+        if (i + 8 > s.length() || s.charAt(i + 2) != ':' || s.charAt(i + 5) != ':') {
+            return NONE;
+        }
+        int hour = digits(s, i, 2);
+        int minute = digits(s, i + 3, 2);
+        int second = digits(s, i + 6, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return NONE;
+        }
+        int position = i + 8;
+        int millis = 0;
+        if (position < s.length() && (s.charAt(position) == '.' || s.charAt(position) == ',')) {
+            position++;
+            int scale = 100;
+            while (position < s.length() && isDigit(s, position)) {
+                millis += (s.charAt(position) - '0') * scale;
+                scale /= 10;
+                position++;
+            }
+        }
+        long epochSeconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        return (epochSeconds - zoneOffsetSeconds(s, position)) * 1000L + millis;
+    }
+
+    private static int zoneOffsetSeconds(CharSequence s, int i) {
+        if (i >= s.length()) {
+            return 0;
+        }
+        char sign = s.charAt(i);
+        if (sign != '+' && sign != '-') {
+            return 0;
+        }
+        int hours = digits(s, i + 1, 2);
+        if (hours < 0) {
+            return 0;
+        }
+        // Minutes are optional, as in +02
+        int minutesAt = i + 3 < s.length() && s.charAt(i + 3) == ':' ? i + 4 : i + 3;
+        int minutes = Math.max(0, digits(s, minutesAt, 2));
+        int offset = hours * 3600 + minutes * 60;
+        return sign == '-' ? -offset : offset;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // Days since 1970-01-01 of a proleptic Gregorian date
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int digits(CharSequence s, int i, int count) {
+        if (i + count > s.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int k = i; k < i + count; k++) {
+            if (!isDigit(s, k)) {
+                return -1;
+            }
+            value = value * 10 + (s.charAt(k) - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(CharSequence s, int i) {
+        char c = s.charAt(i);
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Reusable view of raw file bytes as characters, enough for the ASCII of a timestamp,
+     * so lines can be checked straight out of a mapped buffer.
+     */
+    static final class ByteView implements CharSequence {
+        private ByteBuffer buffer;
+        private int offset;
+        private int length;
+
+        ByteView reset(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new ByteView().reset(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                text.append(charAt(i));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package org.taillogs.taillogs.utils;
+
+import org.taillogs.taillogs.utils.FileOperations.TailThreadRef;
+import org.taillogs.taillogs.utils.TailScheduler.PollResult;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
+
+/**
+ * Interleaves the lines of several logs by their {@link LogTimestamp} into one timeline file,
+ * which is then paged and tailed like any other log.
+ * The history is a streaming k-way merge: each source is read front to back through a
+ * {@link LineCursor} that holds one buffer and one line, and a priority queue picks the
+ * earliest head, so memory stays at a few buffers per source however large the inputs are.
+ * Lines without a timestamp, such as stack traces, keep the timestamp of the line before
+ * them and so stay attached to it.
+ * Afterwards the sources are tailed on the {@link TailScheduler} and new lines are merged
+ * the same way. A pending line is written once no other source can still produce an
+ * earlier one, or after {@link #LIVE_GRACE_MS} so a quiet source cannot hold it back.
+ */
+public class MergedTimeline {
+    public static final long LIVE_GRACE_MS = 2000;
+    private static final int MAX_BYTES_PER_POLL = 1024 * 1024;
+    private static final int MAX_PENDING_LINES = 100_000;
+    private static final int MAX_LINE_BYTES = 1024 * 1024;
+    private static final int WRITE_BUFFER = 64 * 1024;
+    private static final long PROGRESS_INTERVAL = 4L * 1024 * 1024;
+
+    private static final ExecutorService MERGER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TimelineMerger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Source> sources = new ArrayList<>();
+    private final Path output;
+    private OutputStream liveOut;
+    private int pendingLines = 0;
+    private volatile boolean closed = false;
+
+    public MergedTimeline(List<Path> paths, Path output) {
+        this.output = output;
+        int labelWidth = 0;
+        for (Path path : paths) {
+            labelWidth = Math.max(labelWidth, path.getFileName().toString().length());
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            sources.add(new Source(i, paths.get(i), labelWidth));
+        }
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    /**
+     * Merge everything the sources hold now into the timeline file on a background thread,
+     * reporting the bytes merged so far every few megabytes.
+     */
+    public CompletableFuture<Void> mergeHistoryAsync(LongConsumer progress) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        MERGER.execute(() -> {
+            try {
+                mergeHistory(progress);
+                result.complete(null);
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Rewrite the timeline file from the start of every source up to its current size.
+     * The read position of each source is kept so {@link #startLive()} continues from there.
+     */
+    public void mergeHistory(LongConsumer progress) throws IOException {
+        PriorityQueue<LineCursor> heads = new PriorityQueue<>(
+                Comparator.<LineCursor>comparingLong(c -> c.timestamp).thenComparingInt(c -> c.source.index));
+        List<LineCursor> cursors = new ArrayList<>();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), WRITE_BUFFER)) {
+            for (Source source : sources) {
+                // Compressed sources are merged from their inflated copy and never grow
+                source.dataPath = GzipSpill.isGzip(source.path) ? GzipSpill.inflate(source.path) : source.path;
+                LineCursor cursor = new LineCursor(source);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            long merged = 0;
+            long nextProgress = PROGRESS_INTERVAL;
+            LineCursor cursor;
+            while (!closed && (cursor = heads.poll()) != null) {
+                long start = cursor.position;
+                write(out, cursor.source, cursor.line);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+                merged += cursor.position - start;
+                if (progress != null && merged >= nextProgress) {
+                    progress.accept(merged);
+                    nextProgress = merged + PROGRESS_INTERVAL;
+                }
+            }
+        } finally {
+            for (LineCursor cursor : cursors) {
+                cursor.source.position = cursor.position;
+                cursor.source.lastTimestamp = cursor.timestamp;
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Follow the sources and append their new lines to the timeline file in timestamp order
+     */
+    public void startLive() throws IOException {
+        synchronized (this) {
+            liveOut = new BufferedOutputStream(
+                    Files.newOutputStream(output, StandardOpenOption.APPEND), WRITE_BUFFER);
+        }
+        TailScheduler scheduler = TailScheduler.getInstance();
+        for (Source source : sources) {
+            if (!source.dataPath.equals(source.path)) {
+                continue;
+            }
+            source.reader = new TailReader(source.path);
+            scheduler.start(source.ref, source.path, () -> poll(source));
+        }
+        scheduleGraceFlush();
+    }
+
+    /**
+     * Close and delete the timeline file, which only lives as long as its tab
+     */
+    public void discard() {
+        close();
+        try {
+            Files.deleteIfExists(output);
+        } catch (IOException e) {
+            System.err.println("Failed to delete timeline " + output + ": " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        closed = true;
+        for (Source source : sources) {
+            TailScheduler.getInstance().close(source.ref);
+            if (source.reader != null) {
+                source.reader.close();
+            }
+        }
+        synchronized (this) {
+            if (liveOut != null) {
+                try {
+                    liveOut.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close timeline: " + e.getMessage());
+                }
+                liveOut = null;
+            }
+        }
+    }
+
+    private PollResult poll(Source source) throws IOException {
+        if (closed) {
+            return PollResult.IDLE;
+        }
+        TailReader reader = source.reader;
+        long size = reader.size();
+        if (reader.isReplaced() || size < source.position) {
+            // Rotated or truncated, continue with the new file from its start
+            reader.reopen();
+            source.position = 0;
+            size = reader.size();
+        }
+        if (size <= source.position) {
+            return PollResult.IDLE;
+        }
+        long limit = Math.min(size, source.position + MAX_BYTES_PER_POLL);
+        long read = reader.readLines(source.position, limit, batch -> accept(source, batch));
+        source.position += read;
+        flushLive();
+        return source.position < size ? PollResult.BACKLOG : PollResult.READ;
+    }
+
+    private synchronized void accept(Source source, TailBatch batch) {
+        long arrived = System.currentTimeMillis();
+        int start = 0;
+        String text = batch.text;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            String line = text.substring(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end);
+            long timestamp = LogTimestamp.parse(line);
+            if (timestamp == LogTimestamp.NONE) {
+                timestamp = source.lastTimestamp;
+            }
+            source.lastTimestamp = timestamp;
+            source.pending.addLast(new PendingLine(line, timestamp, arrived));
+            pendingLines++;
+            start = end + 1;
+        }
+    }
+
+    // Write every pending line that can no longer be preceded by one still to come
+    private synchronized void flushLive() {
+        if (liveOut == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            while (true) {
+                Source earliest = null;
+                for (Source source : sources) {
+                    PendingLine head = source.pending.peekFirst();
+                    if (head != null && (earliest == null || head.timestamp < earliest.pending.peekFirst().timestamp)) {
+                        earliest = source;
+                    }
+                }
+                if (earliest == null) {
+                    break;
+                }
+                PendingLine head = earliest.pending.peekFirst();
+                boolean overdue = now - head.arrived >= LIVE_GRACE_MS || pendingLines > MAX_PENDING_LINES;
+                if (!overdue && !isSettled(head.timestamp, earliest)) {
+                    break;
+                }
+                earliest.pending.pollFirst();
+                pendingLines--;
+                write(liveOut, earliest, head.line);
+            }
+            liveOut.flush();
+        } catch (IOException e) {
+            System.err.println("Failed to write timeline: " + e.getMessage());
+        }
+    }
+
+    // Lines of one source are in time order, so a source that has shown something later is done with this time
+    private boolean isSettled(long timestamp, Source owner) {
+        for (Source source : sources) {
+            if (source != owner && source.pending.isEmpty() && source.reader != null
+                    && source.lastTimestamp < timestamp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scheduleGraceFlush() {
+        if (!closed) {
+            TailScheduler.getInstance().schedule(() -> {
+                flushLive();
+                scheduleGraceFlush();
+            }, LIVE_GRACE_MS / 2);
+        }
+    }
+
+    private static void write(OutputStream out, Source source, String line) throws IOException {
+        out.write(source.label);
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    private static class Source {
+        final int index;
+        final Path path;
+        final byte[] label;
+        final TailThreadRef ref = new TailThreadRef();
+        final ArrayDeque<PendingLine> pending = new ArrayDeque<>();
+        Path dataPath;
+        TailReader reader;
+        long position = 0;
+        long lastTimestamp = LogTimestamp.NONE;
+
+        Source(int index, Path path, int labelWidth) {
+            this.index = index;
+            this.path = path;
+            String name = path.getFileName().toString();
+            this.label = ("[" + name + "]" + " ".repeat(labelWidth - name.length() + 1))
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class PendingLine {
+        final String line;
+        final long timestamp;
+        final long arrived;
+
+        PendingLine(String line, long timestamp, long arrived) {
+            this.line = line;
+            this.timestamp = timestamp;
+            this.arrived = arrived;
+        }
+    }
+
+    /**
+     * Sequential reader over the complete lines a source holds when the merge starts.
+     * A last line without its newline is left for the live tail.
+     */
+    private static class LineCursor {
+        final Source source;
+        final FileChannel channel;
+        final long limit;
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+        byte[] lineBytes = new byte[256];
+        long position = 0;
+        String line;
+        long timestamp = LogTimestamp.NONE;
+
+        LineCursor(Source source) throws IOException {
+            this.source = source;
+            this.channel = FileChannel.open(source.dataPath, StandardOpenOption.READ);
+            this.limit = channel.size();
+            buffer.flip();
+        }
+
+        /**
+         * Move to the next complete line, false at the end of the snapshot
+         */
+        boolean advance() throws IOException {
+            int length = 0;
+            long scan = position;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), limit - scan));
+                    if (buffer.limit() == 0 || channel.read(buffer, scan) <= 0) {
+                        // Partial last line, the live tail picks it up from position
+                        buffer.limit(0);
+                        line = null;
+                        return false;
+                    }
+                    buffer.flip();
+                }
+                byte value = buffer.get();
+                scan++;
+                if (value == '\n') {
+                    break;
+                }
+                if (length == MAX_LINE_BYTES) {
+                    // A single line this long is cut rather than held in memory whole
+                    buffer.position(buffer.position() - 1);
+                    scan--;
+                    break;
+                }
+                if (length == lineBytes.length) {
+                    lineBytes = Arrays.copyOf(lineBytes, length * 2);
+                }
+                lineBytes[length++] = value;
+            }
+            if (length > 0 && lineBytes[length - 1] == '\r') {
+                length--;
+            }
+            position = scan;
+            line = new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+            long parsed = LogTimestamp.parse(line);
+            if (parsed != LogTimestamp.NONE) {
+                timestamp = parsed;
+            }
+            return true;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+    }
+}
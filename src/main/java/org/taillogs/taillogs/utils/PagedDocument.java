@@ -0,0 +1,318 @@
+package org.taillogs.taillogs.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Read-only, page oriented view of a log file backed by {@link FileChannel#map}.
+ * The file bytes stay in the OS page cache; only the pages that are actually
+ * displayed get decoded into Strings. Page boundaries are always aligned to line
+ * starts so a page never contains half a line.
+ * Gzip compressed files are paged through their inflated copy, see {@link GzipSpill}.
+ */
+public class PagedDocument implements Closeable {
+    public static final int PAGE_SIZE = 1024 * 1024;
+    /** Returned by {@link #findLineStart(long)} while the line cannot be located yet */
+    public static final long LINE_UNKNOWN = -2;
+    private static final int SCAN_CHUNK = 64 * 1024;
+
+    private final Path path;
+    private final Path dataPath;
+    private final FileChannel channel;
+    private final List<GzipSpill.Checkpoint> checkpoints;
+    private LineIndex lineIndex;
+
+    private PagedDocument(Path path, Path dataPath, FileChannel channel, List<GzipSpill.Checkpoint> checkpoints) {
+        this.path = path;
+        this.dataPath = dataPath;
+        this.channel = channel;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Open a log file. A gzip compressed file is inflated first unless that was done before,
+     * which blocks; use {@link GzipSpill#inflateAsync} beforehand to keep the caller responsive.
+     */
+    public static PagedDocument open(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (GzipSpill.isGzip(path)) {
+            Path spill = GzipSpill.inflate(path);
+            return new PagedDocument(path, spill, FileChannel.open(spill, StandardOpenOption.READ),
+                    GzipSpill.readCheckpoints(path));
+        }
+        return new PagedDocument(path, path, FileChannel.open(path, StandardOpenOption.READ), null);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * File the bytes are read from: the path itself, or the inflated copy of a compressed file
+     */
+    public Path getDataPath() {
+        return dataPath;
+    }
+
+    public boolean isCompressed() {
+        return checkpoints != null;
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Line index of the document, built in the background on first use.
+     * Check {@link LineIndex#isReady()} before relying on it.
+     */
+    public synchronized LineIndex getLineIndex() throws IOException {
+        if (lineIndex == null) {
+            lineIndex = new LineIndex(channel);
+            lineIndex.buildAsync(dataPath, size());
+        }
+        return lineIndex;
+    }
+
+    /**
+     * Line index if one was requested already, otherwise null
+     */
+    public synchronized LineIndex peekLineIndex() {
+        return lineIndex;
+    }
+
+    /**
+     * Byte offset where the 0-based {@code line} starts, -1 if the document has fewer lines.
+     * Uses the line index once it is ready; until then a compressed document scans forward
+     * from the nearest inflate checkpoint and a plain one returns {@link #LINE_UNKNOWN}.
+     */
+    public long findLineStart(long line) throws IOException {
+        LineIndex index = getLineIndex();
+        if (index.isReady()) {
+            return index.lineStart(line);
+        }
+        if (checkpoints == null || line < 0) {
+            return line < 0 ? -1 : LINE_UNKNOWN;
+        }
+        GzipSpill.Checkpoint last = checkpoints.get(checkpoints.size() - 1);
+        if (line > last.lines) {
+            return -1;
+        }
+        GzipSpill.Checkpoint checkpoint = GzipSpill.checkpointBefore(checkpoints, line);
+        long start = skipLines(checkpoint.inflatedOffset, line - checkpoint.lines);
+        return start < size() || line == last.lines ? start : -1;
+    }
+
+    /**
+     * Byte offset of the first line stamped at or after {@code time}, -1 if no line is.
+     * Binary searches the sampled timestamps of the line index and scans the lines of about
+     * one sample interval from there; returns {@link #LINE_UNKNOWN} while the index is built.
+     */
+    public long findTime(long time) throws IOException {
+        LineIndex index = getLineIndex();
+        if (!index.isReady()) {
+            return LINE_UNKNOWN;
+        }
+        LogTimestamp.ByteView view = new LogTimestamp.ByteView();
+        long size = size();
+        // Sample offsets are line starts, so the scan starts at one
+        long position = index.getTimestamps().searchFrom(time);
+        boolean atLineStart = true;
+        while (position < size) {
+            int span = (int) Math.min(SCAN_CHUNK, size - position);
+            int mapped = (int) Math.min(span + TimestampIndex.PREFIX_BYTES, size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+            for (int i = 0; i < span; i++) {
+                if (atLineStart) {
+                    long stamp = TimestampIndex.timestampAt(buffer, i, mapped, view);
+                    if (stamp != LogTimestamp.NONE && stamp >= time) {
+                        return position + i;
+                    }
+                }
+                atLineStart = buffer.get(i) == '\n';
+            }
+            position += span;
+        }
+        return -1;
+    }
+
+    /**
+     * Number of line breaks in the byte range [start, end)
+     */
+    public long countLines(long start, long end) throws IOException {
+        long lines = 0;
+        long position = start;
+        while (position < end) {
+            int length = (int) Math.min(SCAN_CHUNK, end - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            position += length;
+        }
+        return lines;
+    }
+
+    /**
+     * Page covering roughly {@link #PAGE_SIZE} bytes of whole lines that ends at {@code end}.
+     */
+    public Page pageEndingAt(long end) throws IOException {
+        long start = nextLineStart(Math.max(0, end - PAGE_SIZE));
+        if (start >= end) {
+            // Single line longer than a page; split it rather than loading it whole
+            start = Math.max(0, end - PAGE_SIZE);
+        }
+        return new Page(start, end, decode(start, end));
+    }
+
+    /**
+     * Page covering roughly {@link #PAGE_SIZE} bytes of whole lines that starts at {@code start}.
+     */
+    public Page pageStartingAt(long start) throws IOException {
+        long size = size();
+        long end = nextLineStart(Math.min(size, start + PAGE_SIZE));
+        if (end <= start) {
+            end = Math.min(size, start + PAGE_SIZE);
+        }
+        return new Page(start, end, decode(start, end));
+    }
+
+    /**
+     * Start of the earliest line such that at most {@code lines} lines and roughly
+     * {@code maxBytes} bytes lie between it and {@code end}. Scans backwards from
+     * {@code end}, so the cost depends on what is returned and not on the file size.
+     */
+    public long lineStartBefore(long end, long lines, long maxBytes) throws IOException {
+        long floor = Math.max(0, end - maxBytes);
+        // A newline right before end terminates the last line, it does not start a new one
+        long position = end - 1;
+        long remaining = lines;
+        while (position > floor) {
+            int length = (int) Math.min(SCAN_CHUNK, position - floor);
+            long chunkStart = position - length;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, length);
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n' && --remaining == 0) {
+                    return chunkStart + i + 1;
+                }
+            }
+            position = chunkStart;
+        }
+        if (floor == 0) {
+            return 0;
+        }
+        long start = nextLineStart(floor);
+        // Single line longer than the byte budget; cut it rather than loading it whole
+        return start < end ? start : floor;
+    }
+
+    /**
+     * Returns the offset of the first line that starts at or after {@code offset}.
+     */
+    public long nextLineStart(long offset) throws IOException {
+        if (offset <= 0) {
+            return 0;
+        }
+        long size = size();
+        long position = offset - 1;
+        while (position < size) {
+            int length = (int) Math.min(SCAN_CHUNK, size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the offset just past the {@code lines}-th newline counted from {@code offset},
+     * or the size of the document if it has fewer lines left.
+     */
+    public long skipLines(long offset, long lines) throws IOException {
+        long size = size();
+        long position = offset;
+        long remaining = lines;
+        while (remaining > 0 && position < size) {
+            int length = (int) Math.min(SCAN_CHUNK, size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n' && --remaining == 0) {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return remaining > 0 ? size : position;
+    }
+
+    /**
+     * Decode the byte range [start, end) as UTF-8. The range must be smaller than 2 GB.
+     */
+    public String decode(long start, long end) throws IOException {
+        if (end <= start) {
+            return "";
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        return decode(buffer);
+    }
+
+    private static String decode(ByteBuffer buffer) throws CharacterCodingException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = decoder.decode(buffer);
+        return chars.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        LineIndex index = peekLineIndex();
+        if (index != null && size() >= IndexSidecar.MIN_FILE_SIZE) {
+            // Keep what the tailer indexed for the next open, the channel is needed until then
+            ForkJoinPool.commonPool().execute(() -> {
+                index.saveIfGrown(dataPath);
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Ignore close errors
+                }
+            });
+            return;
+        }
+        channel.close();
+    }
+
+    /**
+     * A decoded, line aligned byte range of the document
+     */
+    public static class Page {
+        public final long start;
+        public final long end;
+        public final String text;
+
+        public Page(long start, long end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package org.taillogs.taillogs.utils;
+
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Keeps a bounded window of {@link PagedDocument} pages in a {@link CodeArea}.
+ * Only {@link #MAX_PAGES} pages are ever decoded and shown at once; scrolling past
+ * either edge of the window loads the neighbouring page and drops the one on the
+ * opposite side, so memory stays constant regardless of the file size.
+ * Text appended by the tailer is kept within a scrollback budget, see {@link #trimToBudget()}.
+ * Must be used from the JavaFX application thread.
+ */
+public class PagedViewport {
+    public static final int INITIAL_PAGES = 2;
+    public static final int DEFAULT_OPEN_LINES = 5_000;
+    public static final long DEFAULT_OPEN_BYTES = 2L * 1024 * 1024;
+    public static final int MAX_PAGES = 8;
+    // Eviction trims down to this share of the budget so it runs once per block, not per append
+    private static final double EVICT_TARGET = 0.75;
+
+    private final LogDocument store;
+    private final CodeArea area;
+    private final ArrayDeque<Slot> slots = new ArrayDeque<>();
+    private PagedDocument document;
+    private boolean detached = false;
+    private int maxLines = Integer.MAX_VALUE;
+    private long maxChars = Long.MAX_VALUE;
+    private int openLines = DEFAULT_OPEN_LINES;
+    private long openBytes = DEFAULT_OPEN_BYTES;
+    // Lines at the top of the area that belong to a file rotated away, they cannot be paged
+    private int carriedLines = 0;
+
+    public PagedViewport(LogDocument store) {
+        this.store = store;
+        this.area = store.getArea();
+    }
+
+    /**
+     * Show the end of the document, replacing the current content. Only the last
+     * lines within the open budget are read; older pages are fetched on demand.
+     */
+    public void open(PagedDocument document) throws IOException {
+        close();
+        this.document = document;
+        showLastPages();
+    }
+
+    /**
+     * Show the pages that follow the line starting at {@code offset}, replacing the current
+     * content. The window is detached unless it reaches the end of the file.
+     */
+    public void openAt(long offset) throws IOException {
+        if (offset >= document.size()) {
+            showLastPages();
+            return;
+        }
+        slots.clear();
+        carriedLines = 0;
+        StringBuilder content = new StringBuilder();
+        long start = offset;
+        for (int i = 0; i < INITIAL_PAGES && start < document.size(); i++) {
+            PagedDocument.Page page = document.pageStartingAt(start);
+            String text = LogDocument.normalize(page.text);
+            content.append(text);
+            slots.addLast(new Slot(page.start, page.end, text.length()));
+            start = page.end;
+        }
+        store.replace(content.toString());
+        detached = hasNewer();
+    }
+
+    private void showLastPages() throws IOException {
+        slots.clear();
+        carriedLines = 0;
+        detached = false;
+        long size = document.size();
+        long start = document.lineStartBefore(size, openLines, openBytes);
+
+        StringBuilder content = new StringBuilder();
+        while (start < size) {
+            PagedDocument.Page page = document.pageStartingAt(start);
+            String text = LogDocument.normalize(page.text);
+            content.append(text);
+            slots.addLast(new Slot(page.start, page.end, text.length()));
+            start = page.end;
+        }
+        store.replace(content.toString());
+    }
+
+    /**
+     * Set the scrollback budget. Non-positive values mean no limit.
+     */
+    public void setScrollbackLimit(int maxLines, long maxChars) {
+        this.maxLines = maxLines > 0 ? maxLines : Integer.MAX_VALUE;
+        this.maxChars = maxChars > 0 ? maxChars : Long.MAX_VALUE;
+    }
+
+    /**
+     * Set how much of the end of a file is shown when it is opened
+     */
+    public void setOpenBudget(int lines, long bytes) {
+        this.openLines = lines > 0 ? lines : DEFAULT_OPEN_LINES;
+        this.openBytes = bytes > 0 ? bytes : DEFAULT_OPEN_BYTES;
+    }
+
+    public CodeArea getArea() {
+        return area;
+    }
+
+    public LogDocument getStore() {
+        return store;
+    }
+
+    public PagedDocument getDocument() {
+        return document;
+    }
+
+    public long getWindowStart() {
+        return slots.isEmpty() ? 0 : slots.getFirst().start;
+    }
+
+    public long getWindowEnd() {
+        return slots.isEmpty() ? 0 : slots.getLast().end;
+    }
+
+    public boolean hasOlder() {
+        return document != null && carriedLines == 0 && getWindowStart() > 0;
+    }
+
+    public boolean isFull() {
+        return slots.size() >= MAX_PAGES;
+    }
+
+    /**
+     * True when the newest page was dropped and the window no longer reaches the
+     * end of the file, in which case tail output must not be appended.
+     */
+    public boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * True if the line starting at {@code offset} is inside the window
+     */
+    public boolean contains(long offset) {
+        return offset >= getWindowStart()
+                && (offset < getWindowEnd() || (offset == getWindowEnd() && !hasNewer()));
+    }
+
+    /**
+     * Paragraph of the area that shows the line starting at {@code offset}
+     */
+    public int paragraphOf(long offset) throws IOException {
+        LineIndex index = document.getLineIndex();
+        if (!index.isReady()) {
+            // The window is bounded, so counting its line breaks directly is cheap
+            return carriedLines + (int) document.countLines(getWindowStart(), offset);
+        }
+        return carriedLines + (int) (index.lineAt(offset) - index.lineAt(getWindowStart()));
+    }
+
+    public boolean hasNewer() {
+        try {
+            return document != null && getWindowEnd() < document.size();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Record bytes appended to the end of the window by the tailer and add them to the line index.
+     */
+    public void extendEnd(long newEnd) {
+        LineIndex index = document != null ? document.peekLineIndex() : null;
+        if (index != null) {
+            index.extendTo(newEnd);
+        }
+        if (slots.isEmpty()) {
+            slots.addLast(new Slot(0, newEnd, 0));
+            return;
+        }
+        Slot last = slots.getLast();
+        if (newEnd > last.end) {
+            last.end = newEnd;
+        }
+    }
+
+    /**
+     * Remove everything shown. The window restarts empty at its current end, so tailed
+     * lines keep being appended and the cleared lines can still be paged back in.
+     */
+    public void clearShown() {
+        long end = getWindowEnd();
+        store.clear();
+        slots.clear();
+        carriedLines = 0;
+        if (document != null) {
+            slots.addLast(new Slot(end, end, 0));
+        }
+    }
+
+    /**
+     * Switch to the file that replaced the current one behind the same path. What is shown
+     * stays in place and the new file is appended from its first byte on.
+     */
+    public void followRotation(PagedDocument next) {
+        int shownChars = store.length();
+        int shownLines = area.getParagraphs().size() - 1;
+        closeDocument();
+        document = next;
+        slots.clear();
+        slots.addLast(new Slot(0, 0, shownChars));
+        carriedLines = shownLines;
+        detached = false;
+    }
+
+    /**
+     * Continue the window at {@code offset} after the tailer dropped the lines before it.
+     * What is shown stays in place like after a rotation, since it no longer joins up with the
+     * file, and paging back resumes once it has been trimmed away.
+     */
+    public void skipTo(long offset) {
+        int shownChars = store.length();
+        slots.clear();
+        slots.addLast(new Slot(offset, offset, shownChars));
+        carriedLines = area.getParagraphs().size() - 1;
+        detached = false;
+    }
+
+    /**
+     * Prepend the page before the window. Drops the newest page if the window is full.
+     * @return number of paragraphs inserted at the top, 0 if nothing was loaded
+     */
+    public int loadOlderPage() throws IOException {
+        if (!hasOlder()) {
+            return 0;
+        }
+        PagedDocument.Page page = document.pageEndingAt(getWindowStart());
+        int inserted = store.prepend(page.text);
+        slots.addFirst(new Slot(page.start, page.end, inserted));
+        int insertedLines = area.offsetToPosition(inserted, Bias.Forward).getMajor();
+
+        if (slots.size() > MAX_PAGES) {
+            store.removeTail(lastSlotChars());
+            slots.removeLast();
+            detached = true;
+        }
+        return insertedLines;
+    }
+
+    /**
+     * Append the page after the window. Drops the oldest page if the window is full.
+     * @return number of paragraphs removed from the top, -1 if nothing was loaded
+     */
+    public int loadNewerPage() throws IOException {
+        if (!hasNewer()) {
+            return -1;
+        }
+        PagedDocument.Page page = document.pageStartingAt(getWindowEnd());
+        // The previous newest slot stops growing here, so pin its derived length first
+        slots.getLast().chars = lastSlotChars();
+        store.append(page.text);
+        slots.addLast(new Slot(page.start, page.end, 0));
+
+        int removedLines = 0;
+        if (slots.size() > MAX_PAGES) {
+            Slot first = slots.removeFirst();
+            removedLines = area.offsetToPosition(first.chars, Bias.Forward).getMajor();
+            store.removeHead(first.chars);
+        }
+        detached = hasNewer();
+        return removedLines;
+    }
+
+    /**
+     * Evict the oldest lines once the window holds more than the scrollback budget.
+     * A whole block is removed at once, down to {@link #EVICT_TARGET} of the budget,
+     * and the window start moves forward so the evicted lines can be paged back in.
+     * @return what was removed from the top of the area, null if the window is within budget
+     */
+    public Eviction trimToBudget() throws IOException {
+        if (document == null || slots.isEmpty()) {
+            return null;
+        }
+        int cutLine = budgetCutLine();
+        if (cutLine <= 0) {
+            return null;
+        }
+
+        int removedChars = area.getAbsolutePosition(cutLine, 0);
+        int carriedRemoved = Math.min(carriedLines, cutLine);
+        carriedLines -= carriedRemoved;
+        long newStart = document.skipLines(getWindowStart(), cutLine - carriedRemoved);
+        store.removeHead(removedChars);
+
+        int remaining = removedChars;
+        while (slots.size() > 1 && slots.getFirst().chars <= remaining) {
+            remaining -= slots.removeFirst().chars;
+        }
+        Slot first = slots.getFirst();
+        if (slots.size() > 1) {
+            first.chars -= remaining;
+        }
+        first.start = newStart;
+        return new Eviction(cutLine, removedChars);
+    }
+
+    /**
+     * Evict the oldest lines of text that is not paged from the document, such as the
+     * filtered view, once it holds more than the scrollback budget. The window is left as is.
+     * @return what was removed from the top of the area, null if the text is within budget
+     */
+    public Eviction trimUnpagedToBudget() {
+        int cutLine = budgetCutLine();
+        if (cutLine <= 0) {
+            return null;
+        }
+        int removedChars = area.getAbsolutePosition(cutLine, 0);
+        store.removeHead(removedChars);
+        return new Eviction(cutLine, removedChars);
+    }
+
+    // Lines to remove from the top to get back under the budget, 0 if within it
+    private int budgetCutLine() {
+        int paragraphs = area.getParagraphs().size();
+        int length = store.length();
+        if (paragraphs <= maxLines && length <= maxChars) {
+            return 0;
+        }
+        int cutLine = 0;
+        if (paragraphs > maxLines) {
+            cutLine = paragraphs - (int) (maxLines * EVICT_TARGET);
+        }
+        if (length > maxChars) {
+            int cutChar = length - (int) (maxChars * EVICT_TARGET);
+            cutLine = Math.max(cutLine, area.offsetToPosition(cutChar, Bias.Forward).getMajor() + 1);
+        }
+        // Always keep the last paragraph, it is where the tailer appends
+        return Math.min(cutLine, paragraphs - 1);
+    }
+
+    public void close() {
+        slots.clear();
+        detached = false;
+        carriedLines = 0;
+        closeDocument();
+    }
+
+    private void closeDocument() {
+        if (document != null) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+            document = null;
+        }
+    }
+
+    // The newest slot also holds everything appended by the tailer, so derive its length
+    private int lastSlotChars() {
+        int before = 0;
+        Iterator<Slot> it = slots.iterator();
+        for (int i = 0; i < slots.size() - 1; i++) {
+            before += it.next().chars;
+        }
+        return store.length() - before;
+    }
+
+    /**
+     * Lines and characters removed from the top of the area by {@link #trimToBudget()}
+     */
+    public static class Eviction {
+        public final int lines;
+        public final int chars;
+
+        Eviction(int lines, int chars) {
+            this.lines = lines;
+            this.chars = chars;
+        }
+    }
+
+    private static class Slot {
+        long start;
+        long end;
+        int chars;
+
+        Slot(long start, long end, int chars) {
+            this.start = start;
+            this.end = end;
+            this.chars = chars;
+        }
+    }
+}
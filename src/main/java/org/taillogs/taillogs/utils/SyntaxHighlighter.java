@@ -14,8 +14,7 @@ public class SyntaxHighlighter {
             "(?<ERROR>ERROR)|(?<WARN>WARN)|(?<INFO>INFO)"
     );
 
-    public static void applyLogLevelHighlighting(CodeArea logArea) {
-        String text = logArea.getText();
+    public static void applyLogLevelHighlighting(CodeArea logArea, CharSequence text) {
         StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
         Matcher matcher = LOG_PATTERN.matcher(text);
         int lastEnd = 0;
@@ -0,0 +1,293 @@
+package org.taillogs.taillogs.utils;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import org.fxmisc.richtext.CodeArea;
+import org.taillogs.taillogs.config.BackpressurePolicy;
+import org.taillogs.taillogs.utils.FileOperations.TailThreadRef;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands tail output from the worker threads to the UI once per frame. Workers only enqueue;
+ * an {@link AnimationTimer} drains everything queued since the previous pulse into a single
+ * append, then runs each highlight callback once and follows the caret once, so the FX event
+ * queue sees the same amount of work however fast the files are written. The timer only runs
+ * while something is queued, so idle files cause no frame pulses.
+ * The queue holds at most {@link #MAX_QUEUED_CHARS}; what happens beyond that is decided by
+ * the {@link BackpressurePolicy}, and skipped ranges reach the UI as markers in queue order.
+ * Tailers blocked by a full queue are woken by the drain once there is room again.
+ * A {@link BatchFilter} can narrow what of each batch is shown, such as the lines matching
+ * the active filter rules.
+ */
+public class TailAppendQueue {
+    private static final int MAX_CHARS_PER_FRAME = 1024 * 1024;
+    private static final int MAX_QUEUED_CHARS = 8 * 1024 * 1024;
+
+    private enum Kind { LINES, ROTATION, SKIP }
+
+    private final LogDocument store;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long queuedChars = 0;
+    private volatile BackpressurePolicy policy = BackpressurePolicy.COALESCE;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    // Reused every frame, the drain only runs on the FX thread
+    private final StringBuilder frameText = new StringBuilder();
+    private final Set<Runnable> frameCallbacks = new LinkedHashSet<>();
+    private final Set<TailThreadRef> notFullWaiters = new LinkedHashSet<>();
+    private final List<TailBatch> frameBatches = new ArrayList<>();
+    private BatchFilter filter;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+
+    TailAppendQueue(LogDocument store) {
+        this.store = store;
+    }
+
+    /**
+     * Decides which lines of the batches drained into the view are shown
+     */
+    public interface BatchFilter {
+        /**
+         * Text to append for {@code batch}, empty to show none of it. Called on the FX thread, in queue order.
+         */
+        String apply(TailBatch batch);
+    }
+
+    /**
+     * Show only what {@code filter} passes of the batches drained from now on, everything if null.
+     * Must be called on the FX thread.
+     */
+    public void setFilter(BatchFilter filter) {
+        this.filter = filter;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(BackpressurePolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * True when the queue holds as much as it may and the tailer has to apply the policy
+     */
+    public synchronized boolean isFull() {
+        return queuedChars >= MAX_QUEUED_CHARS;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Wake the tail task of {@code ref} once the queue has room again. Safe to call from any thread.
+     * @return false, without waiting, if there is room already
+     */
+    public synchronized boolean awaitNotFull(TailThreadRef ref) {
+        if (queuedChars < MAX_QUEUED_CHARS) {
+            return false;
+        }
+        notFullWaiters.add(ref);
+        return true;
+    }
+
+    private void signalNotFull() {
+        List<TailThreadRef> woken;
+        synchronized (this) {
+            if (notFullWaiters.isEmpty() || queuedChars >= MAX_QUEUED_CHARS) {
+                return;
+            }
+            woken = new ArrayList<>(notFullWaiters);
+            notFullWaiters.clear();
+        }
+        TailScheduler scheduler = TailScheduler.getInstance();
+        woken.forEach(scheduler::wake);
+    }
+
+    /**
+     * Queue a batch of complete lines read for {@code ref}. Safe to call from any thread.
+     * With {@link BackpressurePolicy#COALESCE} the oldest queued lines are dropped to make room.
+     */
+    public void offer(TailThreadRef ref, TailBatch batch, Runnable highlightCallback) {
+        synchronized (this) {
+            Entry entry = new Entry(Kind.LINES, ref, batch, batch.endOffset, highlightCallback);
+            ref.addRead(batch.lineCount, batch.endOffset - batch.startOffset);
+            entries.addLast(entry);
+            account(entry, 1);
+            if (policy == BackpressurePolicy.COALESCE && queuedChars > MAX_QUEUED_CHARS) {
+                coalesce(entry);
+            }
+        }
+        ensureStarted();
+    }
+
+    /**
+     * Queue the switch to a new file behind the same path, after the batches already queued for the old one.
+     */
+    public void offerRotation(TailThreadRef ref, Runnable highlightCallback) {
+        synchronized (this) {
+            entries.addLast(new Entry(Kind.ROTATION, ref, null, 0, highlightCallback));
+        }
+        ensureStarted();
+    }
+
+    /**
+     * Drop every line still queued for {@code ref} because reading continues at {@code offset}.
+     */
+    public void skipTo(TailThreadRef ref, long offset, Runnable highlightCallback) {
+        synchronized (this) {
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.ref == ref && entry.kind != Kind.ROTATION) {
+                    it.remove();
+                    account(entry, -1);
+                    if (entry.kind == Kind.LINES) {
+                        ref.addSkipped(entry.batch.lineCount, entry.batch.endOffset - entry.batch.startOffset);
+                    }
+                }
+            }
+            entries.addLast(new Entry(Kind.SKIP, ref, null, offset, highlightCallback));
+        }
+        signalNotFull();
+        ensureStarted();
+    }
+
+    // Drop queued lines from the head, keeping the batch just added, and mark where the kept ones start
+    private void coalesce(Entry newest) {
+        boolean dropped = false;
+        Entry head;
+        while (queuedChars > MAX_QUEUED_CHARS && (head = entries.peekFirst()) != newest
+                && head.kind != Kind.ROTATION) {
+            entries.pollFirst();
+            account(head, -1);
+            if (head.kind == Kind.LINES) {
+                head.ref.addSkipped(head.batch.lineCount, head.batch.endOffset - head.batch.startOffset);
+                dropped = true;
+            }
+        }
+        head = entries.peekFirst();
+        if (dropped && head != null && head.kind == Kind.LINES) {
+            entries.addFirst(new Entry(Kind.SKIP, head.ref, null, head.batch.startOffset, head.highlightCallback));
+        }
+    }
+
+    private void account(Entry entry, int sign) {
+        if (entry.kind == Kind.LINES) {
+            queuedChars += sign * (long) entry.batch.text.length();
+            entry.ref.addQueued(sign * entry.batch.lineCount);
+        }
+    }
+
+    private void ensureStarted() {
+        if (started.compareAndSet(false, true)) {
+            Platform.runLater(timer::start);
+        }
+    }
+
+    private void drain() {
+        StringBuilder text = frameText;
+        Set<Runnable> callbacks = frameCallbacks;
+        List<TailBatch> batches = frameBatches;
+        text.setLength(0);
+        callbacks.clear();
+        batches.clear();
+        int frameChars = 0;
+        boolean fallbackHighlighting = false;
+        Entry control = null;
+        synchronized (this) {
+            Entry head = entries.peekFirst();
+            if (head == null) {
+                // Nothing to show, stop pulsing until the next offer starts the timer again
+                started.set(false);
+                timer.stop();
+                return;
+            }
+            if (head.kind != Kind.LINES) {
+                // Rotation and skips get a frame of their own so the lines before them are already shown
+                control = entries.pollFirst();
+            }
+            Entry entry;
+            while (control == null && frameChars < MAX_CHARS_PER_FRAME
+                    && (entry = entries.peekFirst()) != null && entry.kind == Kind.LINES) {
+                entries.pollFirst();
+                account(entry, -1);
+                batches.add(entry.batch);
+                frameChars += entry.batch.text.length();
+                entry.ref.setCommittedPosition(entry.batch.endOffset);
+                if (entry.highlightCallback != null) {
+                    callbacks.add(entry.highlightCallback);
+                } else {
+                    fallbackHighlighting = true;
+                }
+            }
+        }
+        signalNotFull();
+
+        if (control != null) {
+            control.ref.setCommittedPosition(control.offset);
+            if (control.kind == Kind.ROTATION) {
+                control.ref.markRotated();
+            } else {
+                control.ref.markSkipped(control.offset);
+            }
+            if (control.highlightCallback != null) {
+                control.highlightCallback.run();
+            }
+            return;
+        }
+
+        // Filtered outside the lock so the tailers are not held up; a frame with a single
+        // batch appends its text as it is, without copying
+        String firstText = null;
+        for (TailBatch batch : batches) {
+            String shown = filter != null ? filter.apply(batch) : batch.text;
+            if (firstText == null) {
+                firstText = shown;
+            } else {
+                if (text.length() == 0) {
+                    text.append(firstText);
+                }
+                text.append(shown);
+            }
+        }
+        batches.clear();
+        store.append(text.length() > 0 ? text.toString() : firstText);
+        CodeArea area = store.getArea();
+        callbacks.forEach(Runnable::run);
+        if (fallbackHighlighting) {
+            SyntaxHighlighter.applyLogLevelHighlighting(area, store.snapshot());
+        }
+        // Scroll to end
+        area.moveTo(area.getLength());
+        area.requestFollowCaret();
+    }
+
+    private static class Entry {
+        final Kind kind;
+        final TailThreadRef ref;
+        final TailBatch batch;
+        final long offset;
+        final Runnable highlightCallback;
+
+        Entry(Kind kind, TailThreadRef ref, TailBatch batch, long offset, Runnable highlightCallback) {
+            this.kind = kind;
+            this.ref = ref;
+            this.batch = batch;
+            this.offset = offset;
+            this.highlightCallback = highlightCallback;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.taillogs.taillogs.utils;
+
+/**
+ * Complete lines read by the tailer in one turn, with the byte range they came from.
+ * {@code text} always ends with a newline unless a single line grew past the holdback
+ * limit and had to be flushed unfinished.
+ */
+public class TailBatch {
+    public final String text;
+    public final long startOffset;
+    public final long endOffset;
+    public final int lineCount;
+
+    public TailBatch(String text, long startOffset, long endOffset, int lineCount) {
+        this.text = text;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.lineCount = lineCount;
+    }
+}
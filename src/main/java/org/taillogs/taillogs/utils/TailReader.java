@@ -0,0 +1,288 @@
+package org.taillogs.taillogs.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+/**
+ * Read side of a tailed file. Keeps one {@link FileChannel} open for as long as the
+ * file is tailed and reads into a pooled direct buffer, decoding straight out of it
+ * with a streaming UTF-8 decoder into a reusable {@link CharBuffer}.
+ * Only complete lines are handed out; the trailing partial line is held back until
+ * its newline arrives.
+ * Reads and {@link #close()} are serialized so the buffer is never returned to the
+ * pool while a tail worker is still using it.
+ * The open channel stays on the file it was opened on, so after a rename style rotation
+ * it can still be drained; {@link #isReplaced()} tells when the path points to a new file.
+ */
+public class TailReader implements Closeable {
+    private static final int MAX_PENDING_CHARS = 1024 * 1024;
+    private static final int FINGERPRINT_BYTES = 32;
+
+    private final Path path;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private CharBuffer chars;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder pending = new StringBuilder();
+    private long pendingStart = -1;
+    private long expectedPosition = -1;
+    private boolean closed = false;
+    private Object fileKey;
+    private final ByteBuffer fingerprint = ByteBuffer.allocate(FINGERPRINT_BYTES);
+    private final ByteBuffer fingerprintCheck = ByteBuffer.allocate(FINGERPRINT_BYTES);
+    private long fingerprintEnd = -1;
+
+    public TailReader(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            fileKey = readFileKey();
+        }
+        return channel;
+    }
+
+    private Object readFileKey() {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True when the path now names a different file than the one being read, i.e. the
+     * file was renamed away and recreated. Always false where the platform has no file keys.
+     */
+    public synchronized boolean isReplaced() {
+        if (channel == null || fileKey == null) {
+            return false;
+        }
+        Object current = readFileKey();
+        return current != null && !current.equals(fileKey);
+    }
+
+    /**
+     * Check that the bytes just before {@code position} are still the ones last read there.
+     * A file truncated and rewritten past the old position (copytruncate) fails this check.
+     */
+    public synchronized boolean isContinuous(long position) throws IOException {
+        if (closed || fingerprintEnd != position || fingerprint.limit() == 0) {
+            return true;
+        }
+        fingerprintCheck.clear();
+        fingerprintCheck.limit(fingerprint.limit());
+        int read = channel().read(fingerprintCheck, position - fingerprint.limit());
+        fingerprintCheck.flip();
+        return read == fingerprint.limit() && fingerprintCheck.equals(fingerprint.rewind());
+    }
+
+    private void takeFingerprint(FileChannel fileChannel, long end) throws IOException {
+        int length = (int) Math.min(FINGERPRINT_BYTES, end);
+        fingerprint.clear();
+        fingerprint.limit(length);
+        int read = fileChannel.read(fingerprint, end - length);
+        fingerprint.flip();
+        fingerprintEnd = read == length ? end : -1;
+    }
+
+    public synchronized long size() throws IOException {
+        return channel().size();
+    }
+
+    /**
+     * Read the bytes in [position, limit) and pass every complete line to {@code sink} as
+     * one batch. A multi-byte sequence cut off at {@code limit} stays in the byte buffer
+     * and a line without its newline stays in the holdback, both are completed by the
+     * next read that continues at the returned position.
+     * @return number of bytes read, which can be less than requested if the file shrank
+     */
+    public synchronized long readLines(long position, long limit, Consumer<TailBatch> sink) throws IOException {
+        if (closed) {
+            return 0;
+        }
+        FileChannel fileChannel = channel();
+        if (buffer == null) {
+            buffer = ByteBufferPool.acquire();
+            chars = ByteBufferPool.acquireChars();
+            resetDecoder();
+        }
+        if (position != expectedPosition) {
+            // Not a continuation of the previous read, drop any partial sequence or line
+            resetDecoder();
+        }
+        if (pendingStart < 0) {
+            pendingStart = position;
+        }
+
+        long current = position;
+        long lastLineEnd = -1;
+        while (current < limit) {
+            // Buffer is in write mode here, possibly holding carried over bytes
+            int carried = buffer.position();
+            int room = (int) Math.min(buffer.capacity() - carried, limit - current);
+            buffer.limit(carried + room);
+            int bytesRead = fileChannel.read(buffer, current);
+            if (bytesRead <= 0) {
+                buffer.limit(buffer.capacity());
+                break;
+            }
+            // The pooled buffers are heap buffers, scanned on their array
+            byte[] bytes = buffer.array();
+            int base = buffer.arrayOffset();
+            for (int i = carried + bytesRead - 1; i >= carried; i--) {
+                if (bytes[base + i] == '\n') {
+                    lastLineEnd = current + (i - carried) + 1;
+                    break;
+                }
+            }
+            current += bytesRead;
+
+            buffer.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(buffer, chars, false);
+                chars.flip();
+                pending.append(chars);
+                chars.clear();
+            } while (result.isOverflow());
+            buffer.compact();
+        }
+        expectedPosition = current;
+        if (current > position) {
+            takeFingerprint(fileChannel, current);
+        }
+
+        if (lastLineEnd >= 0) {
+            int split = pending.lastIndexOf("\n") + 1;
+            emit(split, lastLineEnd, sink);
+        } else if (pending.length() >= MAX_PENDING_CHARS) {
+            // A single line this long is flushed unfinished rather than held forever
+            emit(pending.length(), current - buffer.position(), sink);
+        }
+        return current - position;
+    }
+
+    /**
+     * Start of the line that ends at or contains {@code end}, looking back at most
+     * {@link #MAX_PENDING_CHARS} bytes; {@code end} itself if no line break is found.
+     */
+    public synchronized long lineStartBefore(long end) throws IOException {
+        if (closed || end <= 0) {
+            return Math.max(0, end);
+        }
+        FileChannel fileChannel = channel();
+        // The read buffer may hold carried bytes, scan with a second pooled one
+        ByteBuffer scan = ByteBufferPool.acquire();
+        try {
+            long position = end;
+            long lowest = Math.max(0, end - MAX_PENDING_CHARS);
+            while (position > lowest) {
+                int length = (int) Math.min(scan.capacity(), position - lowest);
+                scan.clear();
+                scan.limit(length);
+                int read = fileChannel.read(scan, position - length);
+                if (read < length) {
+                    break;
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (scan.get(i) == '\n') {
+                        return position - length + i + 1;
+                    }
+                }
+                position -= length;
+            }
+            return position == 0 ? 0 : end;
+        } finally {
+            ByteBufferPool.release(scan);
+        }
+    }
+
+    private void emit(int charCount, long endOffset, Consumer<TailBatch> sink) {
+        String text = pending.substring(0, charCount);
+        pending.delete(0, charCount);
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        TailBatch batch = new TailBatch(text, pendingStart, endOffset, lines);
+        pendingStart = endOffset;
+        sink.accept(batch);
+    }
+
+    /**
+     * Hand out the held back partial line, for example because its file was rotated away
+     * and will never be completed.
+     */
+    public synchronized void flushPending(Consumer<TailBatch> sink) {
+        if (pending.length() > 0) {
+            pending.append('\n');
+            emit(pending.length(), expectedPosition, sink);
+        }
+    }
+
+    /**
+     * Drop the channel on the old file so the next read opens whatever the path names now.
+     */
+    public synchronized void reopen() {
+        closeChannel();
+        resetDecoder();
+    }
+
+    /**
+     * Forget carried over bytes and the held back line, for example after the file was truncated.
+     */
+    public synchronized void resetDecoder() {
+        decoder.reset();
+        if (buffer != null) {
+            buffer.clear();
+        }
+        pending.setLength(0);
+        pendingStart = -1;
+        expectedPosition = -1;
+        fingerprintEnd = -1;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        ByteBufferPool.release(buffer);
+        ByteBufferPool.releaseChars(chars);
+        buffer = null;
+        chars = null;
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.taillogs.taillogs.utils;
+
+import org.taillogs.taillogs.utils.FileOperations.TailThreadRef;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Shared tail engine. Every tailed file is a task on a small fixed worker pool instead
+ * of a dedicated thread, so the thread count stays flat however many files are open.
+ * A task reads one bounded slice per turn and goes to the back of the queue when more
+ * data is pending, which keeps a busy file from starving quiet ones. Quiet files back
+ * off from {@link #MIN_POLL_MS} to {@link #MAX_POLL_MS}; watch events wake them at once.
+ */
+public class TailScheduler {
+    public static final long MIN_POLL_MS = 20;
+    public static final long MAX_POLL_MS = 1000;
+    private static final int WORKER_COUNT = 2;
+
+    private static final TailScheduler INSTANCE = new TailScheduler();
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final FileChangeNotifier notifier = new FileChangeNotifier();
+    private final Map<TailThreadRef, Task> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Outcome of a single tail turn, used to pick the next delay
+     */
+    public enum PollResult {
+        /** Nothing new in the file */
+        IDLE,
+        /** New data was read up to the end of the file */
+        READ,
+        /** New data was read and more is already waiting */
+        BACKLOG,
+        /** Data is waiting but cannot be taken yet; the task only runs again once woken */
+        BLOCKED
+    }
+
+    @FunctionalInterface
+    public interface TailStep {
+        PollResult poll() throws Exception;
+    }
+
+    private TailScheduler() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "TailWorker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ScheduledThreadPoolExecutor(WORKER_COUNT, factory);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public static TailScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEventDriven() {
+        return notifier.isEventDriven();
+    }
+
+    /**
+     * Report entries created, modified or deleted in {@code directory}, see
+     * {@link FileChangeNotifier#registerDirectory(Path, BiConsumer)}.
+     */
+    public void watchDirectory(Path directory, BiConsumer<WatchEvent.Kind<?>, Path> listener) {
+        notifier.registerDirectory(directory, listener);
+    }
+
+    public void unwatchDirectory(Path directory, BiConsumer<WatchEvent.Kind<?>, Path> listener) {
+        notifier.unregisterDirectory(directory, listener);
+    }
+
+    /**
+     * Start tailing {@code file} for {@code ref}, or resume it if it is already registered.
+     */
+    public void start(TailThreadRef ref, Path file, TailStep step) {
+        Task task = tasks.computeIfAbsent(ref, r -> {
+            Task created = new Task(file, step);
+            notifier.register(file, created.wakeListener);
+            return created;
+        });
+        task.resume();
+    }
+
+    public boolean isRegistered(TailThreadRef ref) {
+        return tasks.containsKey(ref);
+    }
+
+    public void pause(TailThreadRef ref) {
+        Task task = tasks.get(ref);
+        if (task != null) {
+            task.pause();
+        }
+    }
+
+    public void resume(TailThreadRef ref) {
+        Task task = tasks.get(ref);
+        if (task != null) {
+            task.resume();
+        }
+    }
+
+    public void close(TailThreadRef ref) {
+        Task task = tasks.remove(ref);
+        if (task != null) {
+            task.close();
+            notifier.unregister(task.file, task.wakeListener);
+        }
+    }
+
+    /**
+     * Run the task of {@code ref} as soon as a worker is free, if it is registered and not paused.
+     */
+    public void wake(TailThreadRef ref) {
+        Task task = tasks.get(ref);
+        if (task != null) {
+            task.wake();
+        }
+    }
+
+    /**
+     * Run a one-off action on the tail workers after a delay.
+     */
+    public ScheduledFuture<?> schedule(Runnable action, long delayMs) {
+        return executor.schedule(action, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public int getActiveTaskCount() {
+        return tasks.size();
+    }
+
+    private final class Task implements Runnable {
+        final Path file;
+        final TailStep step;
+        final Runnable wakeListener = this::wake;
+        private long intervalMs = MIN_POLL_MS;
+        private ScheduledFuture<?> pending;
+        private boolean running = false;
+        private boolean wakeRequested = false;
+        private boolean paused = true;
+        private boolean closed = false;
+
+        Task(Path file, TailStep step) {
+            this.file = file;
+            this.step = step;
+        }
+
+        synchronized void resume() {
+            if (closed) {
+                return;
+            }
+            paused = false;
+            intervalMs = MIN_POLL_MS;
+            scheduleIn(0);
+        }
+
+        synchronized void pause() {
+            paused = true;
+            cancelPending();
+        }
+
+        synchronized void close() {
+            closed = true;
+            paused = true;
+            cancelPending();
+        }
+
+        synchronized void wake() {
+            scheduleIn(0);
+        }
+
+        private void scheduleIn(long delayMs) {
+            if (paused || closed) {
+                return;
+            }
+            if (running) {
+                wakeRequested |= delayMs == 0;
+                return;
+            }
+            if (pending != null) {
+                if (pending.getDelay(TimeUnit.MILLISECONDS) <= delayMs) {
+                    return;
+                }
+                pending.cancel(false);
+            }
+            pending = executor.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void cancelPending() {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                pending = null;
+                if (paused || closed) {
+                    return;
+                }
+                running = true;
+                wakeRequested = false;
+            }
+
+            PollResult result = PollResult.IDLE;
+            try {
+                result = step.poll();
+            } catch (Exception e) {
+                // Ignore temporary read errors
+            }
+
+            synchronized (this) {
+                running = false;
+                if (result == PollResult.BLOCKED) {
+                    // Whoever unblocks the task wakes it, possibly while it was still running
+                    if (wakeRequested) {
+                        scheduleIn(0);
+                    }
+                    return;
+                }
+                if (result == PollResult.IDLE) {
+                    intervalMs = Math.min(MAX_POLL_MS, intervalMs * 2);
+                } else {
+                    intervalMs = MIN_POLL_MS;
+                }
+                boolean immediate = result == PollResult.BACKLOG || wakeRequested;
+                scheduleIn(immediate ? 0 : intervalMs);
+            }
+        }
+    }
+}
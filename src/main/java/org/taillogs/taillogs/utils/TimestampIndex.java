@@ -0,0 +1,135 @@
+package org.taillogs.taillogs.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sparse map from time to file position: about every {@link #SAMPLE_INTERVAL} bytes the
+ * first line that has a {@link LogTimestamp} is recorded with its start offset. Samples are
+ * kept in file order in two growable arrays, so finding where a time starts is a binary
+ * search followed by a scan of at most one interval of lines.
+ * Filled by {@link LineIndex} while it indexes and extends, and assumes the timestamps of
+ * a file do not go backwards.
+ */
+public class TimestampIndex {
+    public static final int SAMPLE_INTERVAL = 64 * 1024;
+    /** Bytes of a line start looked at for its timestamp */
+    static final int PREFIX_BYTES = 64;
+
+    private long[] offsets = new long[256];
+    private long[] times = new long[256];
+    private int count = 0;
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Time of the last sample, {@link LogTimestamp#NONE} if there is none
+     */
+    public synchronized long getLastTime() {
+        return count == 0 ? LogTimestamp.NONE : times[count - 1];
+    }
+
+    /**
+     * Offset of the last sample that is earlier than {@code time}, 0 if there is none.
+     * The first line at or after {@code time} starts at or after this offset.
+     */
+    public synchronized long searchFrom(long time) {
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? 0 : offsets[found];
+    }
+
+    synchronized long getOffset(int sample) {
+        return offsets[sample];
+    }
+
+    synchronized long getTime(int sample) {
+        return times[sample];
+    }
+
+    /**
+     * Record a sample; ignored unless it lies after the last one
+     */
+    synchronized void add(long offset, long time) {
+        if (count > 0 && offsets[count - 1] >= offset) {
+            return;
+        }
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            times = Arrays.copyOf(times, count * 2);
+        }
+        offsets[count] = offset;
+        times[count] = time;
+        count++;
+    }
+
+    /**
+     * Timestamp of the line starting at {@code index} of {@code buffer}, read from at most
+     * {@link #PREFIX_BYTES} bytes before its end or the end of the buffer
+     */
+    static long timestampAt(ByteBuffer buffer, int index, int limit, LogTimestamp.ByteView view) {
+        int end = Math.min(limit, index + PREFIX_BYTES);
+        int length = 0;
+        while (index + length < end && buffer.get(index + length) != '\n') {
+            length++;
+        }
+        return LogTimestamp.parse(view.reset(buffer, index, length));
+    }
+
+    /**
+     * Collects the samples of one scanned range: the first timestamped line at or after each interval boundary
+     */
+    static final class Sampler {
+        private final LogTimestamp.ByteView view = new LogTimestamp.ByteView();
+        long nextSample;
+        long[] offsets = new long[16];
+        long[] times = new long[16];
+        int count = 0;
+
+        Sampler(long nextSample) {
+            this.nextSample = nextSample;
+        }
+
+        /**
+         * Called for a line that starts at {@code index} of {@code buffer}, which begins at file offset {@code base}
+         */
+        void lineStart(ByteBuffer buffer, int index, int limit, long base) {
+            long offset = base + index;
+            if (offset < nextSample) {
+                return;
+            }
+            long time = timestampAt(buffer, index, limit, view);
+            if (time == LogTimestamp.NONE) {
+                // Continuation line or cut off at the end of the buffer, try the next one
+                return;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                times = Arrays.copyOf(times, count * 2);
+            }
+            offsets[count] = offset;
+            times[count] = time;
+            count++;
+            nextSample = offset + SAMPLE_INTERVAL;
+        }
+
+        void addTo(TimestampIndex index) {
+            for (int i = 0; i < count; i++) {
+                index.add(offsets[i], times[i]);
+            }
+            count = 0;
+        }
+    }
+}
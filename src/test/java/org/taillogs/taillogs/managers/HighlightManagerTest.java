@@ -0,0 +1,142 @@
+package org.taillogs.taillogs.managers;
+
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.junit.jupiter.api.Test;
+import org.taillogs.taillogs.models.HighlightPattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Highlighting with the shared literal matcher must style every character the way matching
+ * each pattern in turn as a case-insensitive regex did, plain patterns quoted.
+ */
+class HighlightManagerTest {
+    /** Words that overlap each other and the log levels */
+    private static final String[] WORDS = {"error", "ERROR", "Warn", "info", "aba", "ab", "ba", "bab", "aa", "x", " ", "\n"};
+    private static final String[] PLAIN = {"aba", "ab", "ba", "BA", "aaa", "xa", "rror", "err", "o", "Info"};
+    private static final String[] REGEX = {"a+b", "e.r", "(ab)+"};
+
+    @Test
+    void skipsOccurrencesOverlappingTheLastOneOfTheSameLiteral() {
+        // "xa" takes the first "aaa"; Matcher.find never reports the "aaa" starting inside it
+        List<HighlightPattern> patterns = List.of(new HighlightPattern("xa", "#000001"), new HighlightPattern("aaa", "#000002"));
+        HighlightManager manager = new HighlightManager();
+        manager.getPatterns().addAll(patterns);
+        String text = "xaaaa";
+        assertArrayEquals(perPatternStyles(patterns, text), styles(manager.buildCombinedHighlighting(text), text.length()));
+    }
+
+    @Test
+    void matchesPerPatternRegexHighlighting() {
+        Random random = new Random(25);
+        for (int round = 0; round < 5000; round++) {
+            HighlightManager manager = new HighlightManager();
+            List<HighlightPattern> patterns = new ArrayList<>();
+            int count = random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                boolean regex = random.nextInt(4) == 0;
+                String text = regex ? REGEX[random.nextInt(REGEX.length)] : PLAIN[random.nextInt(PLAIN.length)];
+                HighlightPattern pattern = new HighlightPattern(text, String.format("#%06x", i + 1), regex);
+                pattern.setEnabled(random.nextInt(5) != 0);
+                patterns.add(pattern);
+            }
+            // Added to the list directly so nothing is saved to the preferences
+            manager.getPatterns().addAll(patterns);
+
+            StringBuilder text = new StringBuilder();
+            int words = 1 + random.nextInt(20);
+            for (int i = 0; i < words; i++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+
+            String[] expected = perPatternStyles(patterns, text.toString());
+            String[] actual = styles(manager.buildCombinedHighlighting(text), text.length());
+            assertArrayEquals(expected, actual, "patterns " + describe(patterns) + " on \"" + text + "\"");
+        }
+    }
+
+    private static String[] styles(StyleSpans<Collection<String>> spans, int length) {
+        String[] styles = new String[length];
+        int position = 0;
+        for (StyleSpan<Collection<String>> span : spans) {
+            String style = span.getStyle().isEmpty() ? null : String.join(",", span.getStyle());
+            Arrays.fill(styles, position, position + span.getLength(), style);
+            position += span.getLength();
+        }
+        return styles;
+    }
+
+    // The highlighting before the literal matcher: every pattern a regex, custom ones first, then by order
+    private static String[] perPatternStyles(List<HighlightPattern> patterns, String text) {
+        List<Pattern> compiled = new ArrayList<>();
+        List<String> classes = new ArrayList<>();
+        for (String level : new String[] {"ERROR", "WARN", "INFO"}) {
+            compiled.add(Pattern.compile(level, Pattern.CASE_INSENSITIVE));
+            classes.add(level.toLowerCase());
+        }
+        int levels = compiled.size();
+        for (HighlightPattern pattern : patterns) {
+            if (pattern.isEnabled()) {
+                String regex = pattern.isRegex() ? pattern.getPattern() : Pattern.quote(pattern.getPattern());
+                compiled.add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+                classes.add("highlight-" + pattern.getColor().substring(1));
+            }
+        }
+        List<int[]> matches = new ArrayList<>();
+        for (int p = 0; p < compiled.size(); p++) {
+            Matcher m = compiled.get(p).matcher(text);
+            while (m.find()) {
+                matches.add(new int[] {m.start(), m.end(), p});
+            }
+        }
+        matches.sort((a, b) -> {
+            if (a[0] != b[0]) {
+                return Integer.compare(a[0], b[0]);
+            }
+            boolean customA = a[2] >= levels;
+            boolean customB = b[2] >= levels;
+            if (customA != customB) {
+                return customA ? -1 : 1;
+            }
+            return Integer.compare(a[2], b[2]);
+        });
+        String[] styles = new String[text.length()];
+        boolean[] covered = new boolean[text.length()];
+        for (boolean customPass : new boolean[] {true, false}) {
+            for (int[] match : matches) {
+                if ((match[2] >= levels) != customPass) {
+                    continue;
+                }
+                boolean overlap = false;
+                for (int i = match[0]; i < match[1]; i++) {
+                    overlap |= covered[i];
+                }
+                if (!overlap) {
+                    for (int i = match[0]; i < match[1]; i++) {
+                        covered[i] = true;
+                        styles[i] = classes.get(match[2]);
+                    }
+                }
+            }
+        }
+        return styles;
+    }
+
+    private static String describe(List<HighlightPattern> patterns) {
+        StringBuilder description = new StringBuilder();
+        for (HighlightPattern pattern : patterns) {
+            description.append(pattern.isRegex() ? "/" + pattern.getPattern() + "/" : pattern.getPattern())
+                    .append(pattern.isEnabled() ? "" : " (off)").append("; ");
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package org.taillogs.taillogs.managers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The literal prefilter of regex rules must never reject a line the compiled pattern finds.
+ */
+class RegexLiteralsTest {
+    /** Regex pieces and a string each of them matches */
+    private static final String[][] PIECES = {
+            {"a", "a"},
+            {"ERROR", "ERROR"},
+            {"\\x41", "A"},
+            {"\\x{42}", "B"},
+            {"\\u0043", "C"},
+            {"\\0104", "D"},
+            {"\\011", "\t"},
+            {"\\cA", "\u0001"},
+            {"\\p{Lu}", "Q"},
+            {"\\P{L}", "3"},
+            {"\\N{LATIN SMALL LETTER E}", "e"},
+            {"\\.", "."},
+            {"\\\\", "\\"},
+            {"\\t", "\t"},
+            {"\\d", "7"},
+            {"\\s", " "},
+            {"[xyz]", "y"},
+            {"[\\x5D]", "]"},
+            {"(ab|cd)", "cd"},
+            {"\\Qa.b\\E", "a.b"},
+            {"x?", ""},
+            {"y*", "yy"},
+            {"z+", "zz"},
+            {"w{2}", "ww"},
+    };
+
+    @Test
+    void escapesAreSkippedWhole() {
+        assertPrefilterAccepts("\\x41BC", "ABC");
+        assertPrefilterAccepts("\\u0041BCD", "ABCD");
+        assertPrefilterAccepts("\\0101BC", "ABC");
+        assertPrefilterAccepts("\\cAxyz", "\u0001xyz");
+        assertPrefilterAccepts("\\x{41}BC", "ABC");
+        assertPrefilterAccepts("\\p{Lu}BC", "ABC");
+        assertPrefilterAccepts("\\N{LATIN CAPITAL LETTER A}BC", "ABC");
+        assertPrefilterAccepts("\\Qa.b\\E", "a.b");
+
+        assertEquals("BCD", RegexLiterals.requiredLiteral("\\u0041BCD"));
+        assertEquals("xyz", RegexLiterals.requiredLiteral("\\cAxyz"));
+        assertNull(RegexLiterals.requiredLiteral("\\0101B"));
+        assertEquals(" timeout", RegexLiterals.requiredLiteral("\\x{41}+ timeout"));
+    }
+
+    @Test
+    void prefilterNeverRejectsAMatchingLine() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20000; round++) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder line = new StringBuilder("prefix ");
+            int count = 1 + random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                String[] piece = PIECES[random.nextInt(PIECES.length)];
+                regex.append(piece[0]);
+                line.append(piece[1]);
+            }
+            line.append(" suffix");
+            assertPrefilterAccepts(regex.toString(), line.toString());
+        }
+    }
+
+    private static void assertPrefilterAccepts(String regex, String line) {
+        assertTrue(Pattern.compile(regex).matcher(line).find(), regex + " should find " + line);
+        String literal = RegexLiterals.requiredLiteral(regex);
+        assertTrue(literal == null || line.contains(literal),
+                "prefilter \"" + literal + "\" of " + regex + " rejects " + line);
+    }
+}
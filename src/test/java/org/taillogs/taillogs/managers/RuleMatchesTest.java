@@ -0,0 +1,142 @@
+package org.taillogs.taillogs.managers;
+
+import org.junit.jupiter.api.Test;
+import org.taillogs.taillogs.models.FilterRule;
+import org.taillogs.taillogs.utils.LineBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rule bitmaps built segment by segment must combine to the lines a plain evaluation of each
+ * rule on each line shows, and segments must only be added in file order.
+ */
+class RuleMatchesTest {
+    private static final String[] WORDS = {"ERROR", "error", "WARN", "timeout", "user=42", "a.b", "ab", "x", " "};
+    private static final String[] PLAIN = {"ERROR", "error", "time", "a.b", "b", "x x", ""};
+    /** With and without a required literal, and one that does not compile */
+    private static final String[] REGEX = {"ERR(OR)?", "user=\\d+", "a.b", "^x", "(ab)+ ", "[0-9]{2}", "x|WARN", "time(out", ".*"};
+
+    @Test
+    void appendRejectsSegmentsThatDoNotFollowTheLastOne() {
+        List<FilterRule> rules = List.of(new FilterRule("a"));
+        RuleMatches matches = RuleMatches.compile(rules);
+        int[] required = matches.requiredKeys(rules);
+        assertTrue(matches.append(matches.evaluate("a\nb\n", required, 0, 4)));
+
+        // A gap, and the same lines again, are both refused without adding anything
+        assertFalse(matches.append(matches.evaluate("a\n", required, 5, 7)));
+        assertFalse(matches.append(matches.evaluate("a\nb\n", required, 0, 4)));
+        assertEquals(2, matches.getLineCount());
+        assertEquals(4, matches.getEnd());
+
+        assertTrue(matches.append(matches.evaluate("ba\n", required, 4, 7)));
+        assertEquals(3, matches.getLineCount());
+        assertEquals(List.of(0L, 2L), lines(matches.combine(required)));
+    }
+
+    @Test
+    void combinesToTheLinesEachRuleMatches() {
+        Random random = new Random(25);
+        for (int round = 0; round < 60; round++) {
+            List<FilterRule> rules = new ArrayList<>();
+            int count = 1 + random.nextInt(5);
+            for (int i = 0; i < count; i++) {
+                boolean regex = random.nextBoolean();
+                FilterRule rule = new FilterRule(regex ? REGEX[random.nextInt(REGEX.length)] : PLAIN[random.nextInt(PLAIN.length)], regex);
+                rule.setEnabled(random.nextInt(4) != 0);
+                rules.add(rule);
+            }
+            // The first round runs past the first block of 65536 lines
+            int lineCount = round == 0 ? 70000 : random.nextInt(300);
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < lineCount; i++) {
+                StringBuilder line = new StringBuilder();
+                int words = random.nextInt(5);
+                for (int w = 0; w < words; w++) {
+                    line.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                lines.add(line.toString());
+            }
+
+            RuleMatches matches = RuleMatches.compile(rules);
+            assertTrue(matches.covers(rules));
+            int[] required = matches.requiredKeys(rules);
+            List<FilterRule> enabled = rules.stream().filter(FilterRule::isEnabled).toList();
+            long offset = 0;
+            int from = 0;
+            StringBuilder shown = new StringBuilder();
+            StringBuilder expectedShown = new StringBuilder();
+            while (from < lineCount) {
+                int to = Math.min(lineCount, from + 1 + random.nextInt(500));
+                StringBuilder text = new StringBuilder();
+                for (int i = from; i < to; i++) {
+                    // CRLF line breaks too; rules never see the carriage return
+                    text.append(lines.get(i)).append(random.nextBoolean() ? "\r\n" : "\n");
+                    if (matchesAll(enabled, lines.get(i))) {
+                        expectedShown.append(lines.get(i)).append('\n');
+                    }
+                }
+                RuleMatches.Segment segment = matches.evaluate(text.toString(), required, offset, offset + text.length());
+                assertEquals(to - from, segment.getLines());
+                assertTrue(matches.append(segment));
+                shown.append(segment.getShown());
+                offset += text.length();
+                from = to;
+            }
+            assertEquals(expectedShown.toString(), shown.toString(), "round " + round);
+            assertEquals(lineCount, matches.getLineCount());
+
+            // Every subset of the rules combines from the same bitmaps
+            for (int mask = 1; mask < 1 << rules.size(); mask++) {
+                List<FilterRule> subset = new ArrayList<>();
+                for (int i = 0; i < rules.size(); i++) {
+                    if ((mask & (1 << i)) != 0) {
+                        FilterRule rule = new FilterRule(rules.get(i).getPattern(), rules.get(i).isRegex());
+                        subset.add(rule);
+                    }
+                }
+                List<Long> expected = new ArrayList<>();
+                for (int i = 0; i < lineCount; i++) {
+                    if (matchesAll(subset, lines.get(i))) {
+                        expected.add((long) i);
+                    }
+                }
+                assertEquals(expected, lines(matches.combine(matches.requiredKeys(subset))), "round " + round + ", rules " + mask);
+            }
+        }
+    }
+
+    private static boolean matchesAll(List<FilterRule> rules, String line) {
+        for (FilterRule rule : rules) {
+            if (!matches(rule, line)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(FilterRule rule, String line) {
+        if (!rule.isRegex()) {
+            return line.contains(rule.getPattern());
+        }
+        try {
+            return Pattern.compile(rule.getPattern()).matcher(line).find();
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    private static List<Long> lines(LineBitmap bitmap) {
+        List<Long> lines = new ArrayList<>();
+        bitmap.forEach(lines::add);
+        return lines;
+    }
+}
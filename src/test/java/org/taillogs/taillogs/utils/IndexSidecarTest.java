@@ -0,0 +1,210 @@
+package org.taillogs.taillogs.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A saved sidecar must load back the same line starts and samples, split into chunks of
+ * 65536 starts, and must be rejected once the file it describes is truncated or rewritten.
+ */
+class IndexSidecarTest {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsWhatWasSaved() throws IOException {
+        // Around the chunk boundaries, and none at all
+        for (int count : new int[] {0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 2 * CHUNK_SIZE + 5}) {
+            Path file = directory.resolve("lines-" + count + ".log");
+            long[] starts = writeLog(file, count + 1, new Random(count));
+            TimestampIndex timestamps = new TimestampIndex();
+            for (int i = 0; i < starts.length; i += 1000) {
+                timestamps.add(starts[i], 1_700_000_000_000L + i * 10L);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                IndexSidecar.save(file, channel, channel.size(), starts.length + 1, line -> starts[(int) line - 1], timestamps);
+                IndexSidecar.Loaded loaded = IndexSidecar.load(file, channel);
+                assertNotNull(loaded, count + " lines");
+                assertEquals(channel.size(), loaded.indexedEnd);
+                assertStarts(starts, loaded.lineStarts);
+                assertSamples(timestamps, timestamps.size(), loaded.samples);
+            }
+        }
+    }
+
+    @Test
+    void storesLineLengthsOfEveryVarintSize() throws IOException {
+        // One, two, three and four byte deltas
+        Path file = directory.resolve("long-lines.log");
+        List<Long> startList = new ArrayList<>();
+        long position = 0;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int length : new int[] {1, 127, 128, 16_383, 16_384, 2_097_151, 2_097_152, 5}) {
+                byte[] line = new byte[length];
+                Arrays.fill(line, (byte) 'x');
+                line[length - 1] = '\n';
+                out.write(line);
+                position += length;
+                startList.add(position);
+            }
+        }
+        long[] starts = startList.stream().mapToLong(Long::longValue).toArray();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            IndexSidecar.save(file, channel, channel.size(), starts.length + 1, line -> starts[(int) line - 1], new TimestampIndex());
+            IndexSidecar.Loaded loaded = IndexSidecar.load(file, channel);
+            assertNotNull(loaded);
+            assertStarts(starts, loaded.lineStarts);
+            assertEquals(0, loaded.samples.count);
+        }
+    }
+
+    @Test
+    void keepsOnlySamplesBeforeTheIndexedEnd() throws IOException {
+        Path file = directory.resolve("partial.log");
+        long[] all = writeLog(file, 5000, new Random(1));
+        int indexed = 3000;
+        long indexedEnd = all[indexed - 1];
+        long[] starts = Arrays.copyOf(all, indexed - 1);
+        TimestampIndex timestamps = new TimestampIndex();
+        int before = 0;
+        for (int i = 0; i < all.length; i += 500) {
+            timestamps.add(all[i], 1000L * i);
+            if (all[i] < indexedEnd) {
+                before++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            IndexSidecar.save(file, channel, indexedEnd, starts.length + 1, line -> starts[(int) line - 1], timestamps);
+            IndexSidecar.Loaded loaded = IndexSidecar.load(file, channel);
+            assertNotNull(loaded);
+            assertEquals(indexedEnd, loaded.indexedEnd);
+            assertStarts(starts, loaded.lineStarts);
+            assertSamples(timestamps, before, loaded.samples);
+        }
+    }
+
+    @Test
+    void survivesAppendsButNotTruncationOrRewrites() throws IOException {
+        Path file = directory.resolve("changing.log");
+        // Appending after the indexed end keeps the sidecar usable
+        assertNotNull(saveAndLoad(file, channel -> channel.write(bytes("appended line\n"), channel.size())));
+        // Cut below the indexed end
+        assertNull(saveAndLoad(file, channel -> channel.truncate(channel.size() - 10)));
+        // Cut and written again to the same length, so only the bytes before the end differ
+        assertNull(saveAndLoad(file, channel -> {
+            long size = channel.size();
+            channel.truncate(size - 100);
+            channel.write(bytes("y".repeat(99) + "\n"), size - 100);
+        }));
+        // Rewritten at the start
+        assertNull(saveAndLoad(file, channel -> channel.write(bytes("2"), 0)));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSidecars() throws IOException {
+        Path oldest = sidecar("oldest.idx", 100, 1000);
+        Path middle = sidecar("middle.idx", 100, 2000);
+        Path newest = sidecar("newest.idx", 100, 3000);
+        Path partial = sidecar("newest.idx.part", 500, 500);
+
+        // The oldest is the one just saved, so the next oldest goes instead
+        IndexSidecar.evictSidecars(directory, oldest, 250);
+        assertTrue(Files.exists(oldest));
+        assertFalse(Files.exists(middle));
+        assertTrue(Files.exists(newest));
+        assertTrue(Files.exists(partial));
+
+        IndexSidecar.evictSidecars(directory, newest, 100);
+        assertFalse(Files.exists(oldest));
+        assertTrue(Files.exists(newest));
+
+        // Within the budget nothing is removed
+        IndexSidecar.evictSidecars(directory, null, 100);
+        assertTrue(Files.exists(newest));
+    }
+
+    private interface Change {
+        void apply(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Write a log, save its sidecar, apply {@code change} to the file and load the sidecar again
+     */
+    private IndexSidecar.Loaded saveAndLoad(Path file, Change change) throws IOException {
+        long[] starts = writeLog(file, 20_000, new Random(7));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            IndexSidecar.save(file, channel, channel.size(), starts.length + 1, line -> starts[(int) line - 1], new TimestampIndex());
+            change.apply(channel);
+            return IndexSidecar.load(file, channel);
+        }
+    }
+
+    private Path sidecar(String name, int size, long modified) throws IOException {
+        Path path = Files.write(directory.resolve(name), new byte[size]);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modified));
+        return path;
+    }
+
+    /**
+     * Write {@code lines} lines of random length, the last without a line break
+     * @return starts of every line after the first
+     */
+    private static long[] writeLog(Path file, int lines, Random random) throws IOException {
+        long[] starts = new long[lines - 1];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                starts[i - 1] = text.length();
+            }
+            text.append("line ").append(i).append(" ").append("x".repeat(random.nextInt(random.nextInt(50) == 0 ? 300 : 20)));
+            if (i < lines - 1) {
+                text.append('\n');
+            }
+        }
+        Files.writeString(file, text, StandardCharsets.US_ASCII);
+        return starts;
+    }
+
+    private static void assertStarts(long[] expected, List<long[]> chunks) {
+        for (int c = 0; c < chunks.size() - 1; c++) {
+            assertEquals(CHUNK_SIZE, chunks.get(c).length, "chunk " + c);
+        }
+        long[] loaded = chunks.stream().flatMapToLong(Arrays::stream).toArray();
+        assertArrayEquals(expected, loaded);
+    }
+
+    private static void assertSamples(TimestampIndex expected, int count, TimestampIndex.Sampler loaded) {
+        assertEquals(count, loaded.count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected.getOffset(i), loaded.offsets[i]);
+            assertEquals(expected.getTime(i), loaded.times[i]);
+        }
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,189 @@
+package org.taillogs.taillogs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A bitmap must hold the same lines as a sorted set, whether its blocks are arrays, bit maps
+ * or were converted from one to the other, and intersections must agree across block boundaries.
+ */
+class LineBitmapTest {
+    private static final int BLOCK = 65536;
+    /** Lines a block holds as an array before it becomes a bit map */
+    private static final int ARRAY_MAX = 4096;
+
+    @Test
+    void keepsLinesAcrossTheArrayToBitmapConversion() {
+        for (int count : new int[] {1, ARRAY_MAX - 1, ARRAY_MAX, ARRAY_MAX + 1, 3 * ARRAY_MAX, BLOCK}) {
+            TreeSet<Long> expected = new TreeSet<>();
+            LineBitmap bitmap = new LineBitmap();
+            long step = BLOCK / count;
+            for (int i = 0; i < count; i++) {
+                long line = BLOCK + i * step;
+                bitmap.append(line);
+                expected.add(line);
+            }
+            assertLines(expected, bitmap, count + " lines");
+        }
+    }
+
+    @Test
+    void intersectsArrayAndBitmapBlocks() {
+        // Every 32nd line as an array, every third line as a bit map, and a dense bit map
+        LineBitmap sparse = new LineBitmap();
+        LineBitmap third = new LineBitmap();
+        LineBitmap dense = new LineBitmap();
+        TreeSet<Long> sparseLines = new TreeSet<>();
+        TreeSet<Long> thirdLines = new TreeSet<>();
+        TreeSet<Long> denseLines = new TreeSet<>();
+        for (long line = 0; line < BLOCK; line++) {
+            if (line % 32 == 0) {
+                sparse.append(line);
+                sparseLines.add(line);
+            }
+            if (line % 3 == 0) {
+                third.append(line);
+                thirdLines.add(line);
+            }
+            if (line % 5 != 0) {
+                dense.append(line);
+                denseLines.add(line);
+            }
+        }
+        assertLines(intersect(sparseLines, thirdLines), sparse.and(third), "array and bit map");
+        assertLines(intersect(thirdLines, sparseLines), third.and(sparse), "bit map and array");
+        // Large enough to stay a bit map
+        assertLines(intersect(thirdLines, denseLines), third.and(dense), "bit maps");
+        // Small enough to go back to an array, then intersected again
+        LineBitmap rare = new LineBitmap();
+        TreeSet<Long> rareLines = new TreeSet<>();
+        for (long line = 0; line < BLOCK; line += 2) {
+            if (line % 30 != 0) {
+                rare.append(line);
+                rareLines.add(line);
+            }
+        }
+        LineBitmap few = third.and(dense).and(rare);
+        assertLines(intersect(intersect(thirdLines, denseLines), rareLines), few, "bit maps to array");
+        assertLines(intersect(intersect(intersect(thirdLines, denseLines), rareLines), sparseLines),
+                few.and(sparse), "converted array and array");
+    }
+
+    @Test
+    void intersectsAcrossBlockBoundaries() {
+        Random random = new Random(25);
+        for (int round = 0; round < 40; round++) {
+            TreeSet<Long> firstLines = new TreeSet<>();
+            TreeSet<Long> secondLines = new TreeSet<>();
+            LineBitmap first = randomBitmap(random, firstLines);
+            LineBitmap second = randomBitmap(random, secondLines);
+            assertLines(firstLines, first, "first of round " + round);
+            assertLines(secondLines, second, "second of round " + round);
+            assertLines(intersect(firstLines, secondLines), first.and(second), "round " + round);
+            assertLines(intersect(firstLines, secondLines), second.and(first), "round " + round + " swapped");
+        }
+    }
+
+    @Test
+    void copyIsNotChangedByLaterAppends() {
+        LineBitmap bitmap = new LineBitmap();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (long line = BLOCK - ARRAY_MAX - 10; line < BLOCK + 10; line++) {
+            bitmap.append(line);
+            expected.add(line);
+        }
+        LineBitmap copy = bitmap.copy();
+        bitmap.append(BLOCK + 20);
+        bitmap.append(3L * BLOCK);
+        assertLines(expected, copy, "copy");
+        // The copy can be appended to on its own
+        copy.append(BLOCK + 30);
+        expected.add(BLOCK + 30L);
+        assertLines(expected, copy, "appended copy");
+        assertEquals(expected.size() + 1, bitmap.cardinality());
+    }
+
+    @Test
+    void rejectsLinesThatAreNotIncreasing() {
+        LineBitmap bitmap = new LineBitmap();
+        bitmap.append(5);
+        assertThrows(IllegalArgumentException.class, () -> bitmap.append(5));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.append(4));
+        bitmap.append(BLOCK);
+        assertThrows(IllegalArgumentException.class, () -> bitmap.append(6));
+        assertEquals(2, bitmap.cardinality());
+    }
+
+    @Test
+    void forEachStopsWhenTheVisitorDoes() {
+        LineBitmap bitmap = new LineBitmap();
+        for (long line = 0; line < 2 * BLOCK; line += 7) {
+            bitmap.append(line);
+        }
+        List<Long> visited = new ArrayList<>();
+        assertFalse(bitmap.forEach(line -> {
+            visited.add(line);
+            return line < BLOCK;
+        }));
+        assertEquals((BLOCK + 6) / 7 + 1, visited.size());
+        assertTrue(new LineBitmap().forEach(line -> false));
+        assertTrue(new LineBitmap().isEmpty());
+    }
+
+    /**
+     * Lines in a few blocks around block boundaries, each block empty, sparse, near the array limit or dense
+     */
+    private static LineBitmap randomBitmap(Random random, TreeSet<Long> lines) {
+        LineBitmap bitmap = new LineBitmap();
+        long[] keys = {0, 1, 2, 5, 1L << 20};
+        for (long key : keys) {
+            double density;
+            switch (random.nextInt(4)) {
+                case 0:
+                    continue;
+                case 1:
+                    density = 0.001;
+                    break;
+                case 2:
+                    density = (double) ARRAY_MAX / BLOCK;
+                    break;
+                default:
+                    density = 0.5;
+                    break;
+            }
+            for (long low = 0; low < BLOCK; low++) {
+                // The first and last lines of a block are the boundary cases
+                boolean edge = low < 2 || low >= BLOCK - 2;
+                if (edge ? random.nextBoolean() : random.nextDouble() < density) {
+                    long line = (key << 16) | low;
+                    bitmap.append(line);
+                    lines.add(line);
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    private static TreeSet<Long> intersect(TreeSet<Long> a, TreeSet<Long> b) {
+        TreeSet<Long> result = new TreeSet<>(a);
+        result.retainAll(b);
+        return result;
+    }
+
+    private static void assertLines(TreeSet<Long> expected, LineBitmap bitmap, String message) {
+        List<Long> lines = new ArrayList<>();
+        assertTrue(bitmap.forEach(lines::add), message);
+        assertEquals(new ArrayList<>(expected), lines, message);
+        assertEquals(expected.size(), bitmap.cardinality(), message);
+        assertEquals(expected.isEmpty(), bitmap.isEmpty(), message);
+    }
+}
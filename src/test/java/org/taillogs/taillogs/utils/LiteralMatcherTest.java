@@ -0,0 +1,83 @@
+package org.taillogs.taillogs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The automaton must report exactly the occurrences a quoted {@link Pattern} finds for each
+ * literal, overlapping ones included, with {@code ignoreCase} folding ASCII letters only.
+ */
+class LiteralMatcherTest {
+    /** Few distinct characters so literals overlap and share prefixes and suffixes */
+    private static final String ALPHABET = "abAB-éÉ";
+
+    @Test
+    void findsOverlappingAndNestedLiterals() {
+        LiteralMatcher matcher = new LiteralMatcher(List.of("he", "she", "his", "hers"), false);
+        List<String> found = new ArrayList<>();
+        matcher.findAll("ushers", (literal, start, end) -> found.add(literal + "@" + start + "-" + end));
+        assertEquals(List.of("1@1-4", "0@2-4", "3@2-6"), found);
+    }
+
+    @Test
+    void foldsAsciiCaseOnly() {
+        LiteralMatcher matcher = new LiteralMatcher(List.of("Error", "é"), true);
+        List<String> found = new ArrayList<>();
+        matcher.findAll("ERROR error É é", (literal, start, end) -> found.add(literal + "@" + start));
+        assertEquals(List.of("0@0", "0@6", "1@14"), found);
+    }
+
+    @Test
+    void matchesQuotedPatternsOnRandomLiterals() {
+        Random random = new Random(22);
+        for (int round = 0; round < 20000; round++) {
+            boolean ignoreCase = random.nextBoolean();
+            List<String> literals = new ArrayList<>();
+            int count = 1 + random.nextInt(round % 10 == 0 ? 80 : 6);
+            for (int i = 0; i < count; i++) {
+                literals.add(randomText(random, random.nextInt(4)));
+            }
+            String text = randomText(random, random.nextInt(40));
+            LiteralMatcher matcher = new LiteralMatcher(literals, ignoreCase);
+
+            List<String> found = new ArrayList<>();
+            matcher.findAll(text, (literal, start, end) -> found.add(literal + "@" + start + "-" + end));
+            List<String> expected = new ArrayList<>();
+            boolean containsAll = true;
+            for (int i = 0; i < literals.size(); i++) {
+                String literal = literals.get(i);
+                if (literal.isEmpty()) {
+                    continue;
+                }
+                // A lookahead finds every occurrence, overlapping ones included
+                int flags = ignoreCase ? Pattern.CASE_INSENSITIVE : 0;
+                Matcher m = Pattern.compile("(?=" + Pattern.quote(literal) + ")", flags).matcher(text);
+                boolean any = false;
+                while (m.find()) {
+                    expected.add(i + "@" + m.start() + "-" + (m.start() + literal.length()));
+                    any = true;
+                }
+                containsAll &= any;
+            }
+            found.sort(null);
+            expected.sort(null);
+            assertEquals(expected, found, literals + " in " + text + ", ignoreCase " + ignoreCase);
+            assertEquals(containsAll, matcher.containsAll(text), literals + " in " + text + ", ignoreCase " + ignoreCase);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
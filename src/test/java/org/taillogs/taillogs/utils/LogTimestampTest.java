@@ -0,0 +1,115 @@
+package org.taillogs.taillogs.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Timestamps must be read the way {@code java.time} reads the same stamp, and anything that is
+ * not a valid date and time, such as the 31st of February, must be rejected rather than rolled over.
+ */
+class LogTimestampTest {
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void parsesIsoStamps() {
+        long noon = utc(2024, 3, 1, 12, 0, 0);
+        assertEquals(noon + 123, LogTimestamp.parse("2024-03-01 12:00:00,123 INFO started"));
+        assertEquals(noon + 123, LogTimestamp.parse("2024-03-01T12:00:00.123 INFO started"));
+        assertEquals(noon + 500, LogTimestamp.parse("2024/03/01T12:00:00.5"));
+        assertEquals(noon + 123, LogTimestamp.parse("2024/03/01 12:00:00.123456"));
+        assertEquals(noon, LogTimestamp.parse("2024-03-01 12:00:00"));
+        assertEquals(noon, LogTimestamp.parse("2024-03-01T12:00:00Z"));
+        // Stamps need not start the line
+        assertEquals(noon + 7, LogTimestamp.parse("[worker-3] 2024-03-01 12:00:00.007 done"));
+    }
+
+    @Test
+    void appliesZoneOffsets() {
+        long noon = utc(2024, 3, 1, 12, 0, 0);
+        assertEquals(noon - 2 * HOUR, LogTimestamp.parse("2024-03-01T12:00:00+02:00"));
+        assertEquals(noon - 2 * HOUR + 123, LogTimestamp.parse("2024-03-01T12:00:00.123+02:00 x"));
+        assertEquals(noon - 5 * HOUR - 30 * 60_000L, LogTimestamp.parse("2024-03-01 12:00:00+0530"));
+        assertEquals(noon + 5 * HOUR, LogTimestamp.parse("2024-03-01 12:00:00-05"));
+        assertEquals(noon + 5 * HOUR, LogTimestamp.parse("2024-03-01 12:00:00,000-05 x"));
+        assertEquals(noon + 3 * HOUR + 30 * 60_000L, LogTimestamp.parse("2024-03-01T12:00:00-03:30"));
+    }
+
+    @Test
+    void parsesSyslogStamps() {
+        int year = Year.now().getValue();
+        assertEquals(utc(year, 3, 1, 9, 5, 7), LogTimestamp.parse("Mar  1 09:05:07 host sshd[12]: accepted"));
+        assertEquals(utc(year, 3, 1, 9, 5, 7), LogTimestamp.parse("Mar 01 09:05:07 host"));
+        assertEquals(utc(year, 12, 25, 23, 59, 59), LogTimestamp.parse("Dec 25 23:59:59 host"));
+    }
+
+    @Test
+    void validatesTheDayAgainstTheMonth() {
+        assertEquals(utc(2024, 2, 29, 0, 0, 0), LogTimestamp.parse("2024-02-29 00:00:00"));
+        assertEquals(utc(2000, 2, 29, 0, 0, 0), LogTimestamp.parse("2000-02-29 00:00:00"));
+        assertEquals(utc(2024, 1, 31, 0, 0, 0), LogTimestamp.parse("2024-01-31 00:00:00"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parse("2024-02-31 00:00:00"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parse("2024-02-30 00:00:00"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parse("2023-02-29 00:00:00"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parse("1900-02-29 00:00:00"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parse("2024-04-31 00:00:00"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parse("Apr 31 00:00:00 host"));
+    }
+
+    @Test
+    void rejectsLinesWithoutStamps() {
+        String[] lines = {
+                "",
+                "hello world",
+                "12:00:00 no date",
+                "2024-03-01 no time",
+                "2024-13-01 12:00:00",
+                "2024-00-10 12:00:00",
+                "2024-03-00 12:00:00",
+                "2024-03/01 12:00:00",
+                "2024-03-01X12:00:00",
+                "2024-03-01 24:00:00",
+                "2024-03-01 12:60:00",
+                "2024-03-01 12-00-00",
+                "12024-03-01 12:00:00",
+                "Foo  1 12:00:00 host",
+                "Mar 32 12:00:00 host",
+                "Mar  1 12.00.00 host",
+                "mar  1 12:00:00 host",
+                " Mar  1 12:00:00 host",
+                // Past the characters scanned for a stamp
+                "x".repeat(64) + " 2024-03-01 12:00:00",
+        };
+        for (String line : lines) {
+            assertEquals(LogTimestamp.NONE, LogTimestamp.parse(line), line);
+        }
+    }
+
+    @Test
+    void parsesTimesOfDayAndDays() {
+        assertEquals(12 * HOUR + 34 * 60_000L + 56_789L, LogTimestamp.parseTimeOfDay("12:34:56.789"));
+        assertEquals(59_000L, LogTimestamp.parseTimeOfDay("00:00:59"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parseTimeOfDay("1:00:00"));
+        assertEquals(LogTimestamp.NONE, LogTimestamp.parseTimeOfDay("25:00:00"));
+        long day = utc(2024, 3, 1, 0, 0, 0);
+        assertEquals(day, LogTimestamp.startOfDay(day + 23 * HOUR));
+        assertEquals(day - 24 * HOUR, LogTimestamp.startOfDay(day - 1));
+    }
+
+    @Test
+    void readsStampsFromRawBytes() {
+        byte[] bytes = "skip\n2024-03-01 12:00:00,250+01:00 x\n".getBytes(StandardCharsets.US_ASCII);
+        LogTimestamp.ByteView view = new LogTimestamp.ByteView().reset(ByteBuffer.wrap(bytes), 5, bytes.length - 6);
+        assertEquals(utc(2024, 3, 1, 11, 0, 0) + 250, LogTimestamp.parse(view));
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute, int second) {
+        return LocalDateTime.of(year, month, day, hour, minute, second).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
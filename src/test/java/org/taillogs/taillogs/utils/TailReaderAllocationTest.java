@@ -0,0 +1,110 @@
+package org.taillogs.taillogs.utils;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Heap allocated by the steady state tail read path. Once the pooled buffers are taken, a poll
+ * should allocate little more than the batch text it hands out: no byte arrays, streams or
+ * decoders per poll. Measured with the per thread allocation counter of the JVM.
+ */
+class TailReaderAllocationTest {
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+    private static final int POLL_SIZE = 16 * 1024;
+    /** Batch object, the String around the text and array headers */
+    private static final long OVERHEAD_PER_POLL = 256;
+
+    @TempDir
+    Path directory;
+
+    // Kept so the batches escape and are really allocated
+    private TailBatch lastBatch;
+    private long payloadChars;
+    private long payloadLines;
+    private final Consumer<TailBatch> sink = this::accept;
+
+    @Test
+    void steadyStatePollAllocatesLittleMoreThanItsText() throws IOException {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Path file = directory.resolve("allocation.log");
+        long lines = writeLog(file);
+        long length = Files.size(file);
+
+        try (TailReader reader = new TailReader(file)) {
+            // The first pass takes the pooled buffers and warms up the read path
+            readAll(reader, length, null);
+
+            payloadChars = 0;
+            payloadLines = 0;
+            long[] allocated = {0};
+            long polls = readAll(reader, length, allocated);
+
+            assertEquals(length, payloadChars);
+            assertEquals(lines, payloadLines);
+            // The text is ASCII, which a String stores at one byte per char
+            long overhead = (allocated[0] - payloadChars) / polls;
+            System.out.printf("Tail read allocation: %d bytes for %d bytes of text in %d polls, %d per poll over the text%n",
+                    allocated[0], payloadChars, polls, overhead);
+            assertTrue(allocated[0] <= payloadChars + polls * OVERHEAD_PER_POLL,
+                    "allocated " + allocated[0] + " bytes for " + payloadChars + " bytes of text in " + polls + " polls");
+        }
+    }
+
+    /**
+     * Read the file in poll sized steps, adding the bytes allocated by the reads to {@code allocated} if given
+     * @return number of polls
+     */
+    private long readAll(TailReader reader, long length, long[] allocated) throws IOException {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long position = 0;
+        long polls = 0;
+        while (position < length) {
+            long limit = Math.min(length, position + POLL_SIZE);
+            long before = threads.getCurrentThreadAllocatedBytes();
+            position += reader.readLines(position, limit, sink);
+            long after = threads.getCurrentThreadAllocatedBytes();
+            if (allocated != null) {
+                allocated[0] += after - before;
+            }
+            polls++;
+        }
+        return polls;
+    }
+
+    private void accept(TailBatch batch) {
+        lastBatch = batch;
+        payloadChars += batch.text.length();
+        payloadLines += batch.lineCount;
+    }
+
+    private static long writeLog(Path file) throws IOException {
+        long lines = 0;
+        long size = 0;
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            while (size < FILE_SIZE) {
+                String line = "2024-03-01 12:00:00,123 INFO [worker-" + (lines % 16) + "] req-" + lines
+                        + " handled in " + (lines % 500) + "ms\n";
+                writer.write(line);
+                size += line.length();
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
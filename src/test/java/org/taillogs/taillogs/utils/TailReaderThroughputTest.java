@@ -0,0 +1,110 @@
+package org.taillogs.taillogs.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Timing harness for the tail read path, no JMH: reads the same file in poll sized steps
+ * the way the tailer used to, with a new {@link RandomAccessFile}, {@code byte[]} and
+ * {@link ByteArrayOutputStream} per poll, and through {@link TailReader}, and prints the
+ * bytes per second of both. Only the results are asserted, the timings are for reading.
+ * Tagged as a benchmark and left out of the default test run; run it with
+ * {@code mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=}.
+ */
+@Tag("benchmark")
+class TailReaderThroughputTest {
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    /** A 50 MB/s writer polled every 200 ms, and one polled every few ms */
+    private static final int[] POLL_SIZES = {10 * 1024 * 1024, 256 * 1024, 16 * 1024};
+    private static final int ROUNDS = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void printsReadThroughputBeforeAndAfter() throws IOException {
+        Path file = directory.resolve("throughput.log");
+        long lines = writeLog(file);
+
+        for (int pollSize : POLL_SIZES) {
+            long before = Long.MAX_VALUE;
+            long after = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                assertEquals(lines, readReopeningPerPoll(file, pollSize));
+                before = Math.min(before, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                assertEquals(lines, readWithTailReader(file, pollSize));
+                after = Math.min(after, System.nanoTime() - start);
+            }
+            System.out.printf("Tail read of %d MB in %d KB polls: reopen per poll %.1f MB/s, TailReader %.1f MB/s%n",
+                    FILE_SIZE >> 20, pollSize >> 10, megabytesPerSecond(before), megabytesPerSecond(after));
+        }
+    }
+
+    private static long writeLog(Path file) throws IOException {
+        long lines = 0;
+        long size = 0;
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (size < FILE_SIZE) {
+                String line = "2024-03-01 12:00:00,123 INFO [worker-" + (lines % 16) + "] req-" + lines
+                        + " handled in " + (lines % 500) + "ms é\n";
+                writer.write(line);
+                size += line.getBytes(StandardCharsets.UTF_8).length;
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // The read path before the tailer kept its channel open
+    private static long readReopeningPerPoll(Path file, int pollSize) throws IOException {
+        long length = Files.size(file);
+        long lines = 0;
+        for (long position = 0; position < length; position += pollSize) {
+            try (RandomAccessFile reader = new RandomAccessFile(file.toFile(), "r");
+                 ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                reader.seek(position);
+                byte[] buffer = new byte[8192];
+                long remaining = Math.min(pollSize, length - position);
+                while (remaining > 0) {
+                    int bytesRead = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    out.write(buffer, 0, bytesRead);
+                    remaining -= bytesRead;
+                }
+                String decoded = out.toString(StandardCharsets.UTF_8);
+                lines += decoded.chars().filter(c -> c == '\n').count();
+            }
+        }
+        return lines;
+    }
+
+    private static long readWithTailReader(Path file, int pollSize) throws IOException {
+        long length = Files.size(file);
+        long[] lines = {0};
+        try (TailReader reader = new TailReader(file)) {
+            long position = 0;
+            while (position < length) {
+                position += reader.readLines(position, Math.min(length, position + pollSize),
+                        batch -> lines[0] += batch.lineCount);
+            }
+        }
+        return lines[0];
+    }
+
+    private static double megabytesPerSecond(long nanos) {
+        return FILE_SIZE / (1024.0 * 1024) / (nanos / 1e9);
+    }
+}